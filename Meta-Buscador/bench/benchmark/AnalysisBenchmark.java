@@ -0,0 +1,125 @@
+package benchmark;
+
+import java.io.Reader;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.Tokenizer;
+import org.apache.lucene.analysis.core.LowerCaseFilter;
+import org.apache.lucene.analysis.core.WhitespaceTokenizer;
+
+import search.Constants;
+import search.PayloadAnalyzer;
+import search.RelatedTermsCollector;
+
+/**
+ *
+ * Benchmarks del analisis de documentos.
+ *
+ * <p>Mide {@link search.PayloadAnalyzer} sobre documentos sinteticos de distintos tamaños, informando
+ * el tiempo por token. Como referencia se mide tambien la tokenizacion sola (WhitespaceTokenizer y
+ * LowerCaseFilter); la diferencia es el costo de {@link search.CountTokenFilter} y
+ * {@link search.PayloadFilter}.
+ *
+ * @author Javier Fuentes (j.fuentes06@ufromail.cl)
+ * @version 1.0
+ * @since 1.0
+ *
+ */
+public class AnalysisBenchmark {
+
+	public static final int[] PALABRAS = {500, 5000, 50000};
+	public static final String QUERY = "javier";
+
+	private Corpus corpus;
+
+	/**
+	 * Constructor de la clase.
+	 * @param corpus generador de datos.
+	 */
+	public AnalysisBenchmark(Corpus corpus)
+	{
+		this.corpus = corpus;
+	}
+
+	/**
+	 * Ejecuta los benchmarks.
+	 *
+	 * @param harness arnes de medicion.
+	 * @throws Exception
+	 */
+	public void ejecutar(Harness harness) throws Exception
+	{
+		for (int palabras : PALABRAS)
+		{
+			final String documento = corpus.documento(palabras, QUERY, Math.max(1, palabras/500), palabras);
+
+			final Analyzer base = new Analyzer()
+			{
+				@Override
+				protected TokenStreamComponents createComponents(String field, Reader reader)
+				{
+					Tokenizer source = new WhitespaceTokenizer(reader);
+					return new TokenStreamComponents(source, new LowerCaseFilter(source));
+				}
+			};
+			harness.medir("tokenizacion (base)", "palabras=" + palabras, palabras, new Harness.Operacion()
+			{
+				@Override
+				public long ejecutar() throws Exception
+				{
+					return consumir(base, documento);
+				}
+			});
+
+			final Analyzer analyzer = new PayloadAnalyzer(crearQuery(), 1.0F, null,
+					new RelatedTermsCollector.PorThread(Constants.TERMINOS_RELACIONADOS));
+			harness.medir("PayloadAnalyzer", "palabras=" + palabras, palabras, new Harness.Operacion()
+			{
+				@Override
+				public long ejecutar() throws Exception
+				{
+					return consumir(analyzer, documento);
+				}
+			});
+		}
+	}
+
+	/**
+	 * Analiza un documento completo.
+	 *
+	 * @param analyzer analizador.
+	 * @param documento texto del documento.
+	 * @return numero de tokens.
+	 * @throws Exception
+	 */
+	static long consumir(Analyzer analyzer, String documento) throws Exception
+	{
+		long tokens = 0;
+		TokenStream stream = analyzer.tokenStream("body", documento);
+		try
+		{
+			stream.reset();
+			while (stream.incrementToken())
+			{
+				tokens++;
+			}
+			stream.end();
+		}
+		finally
+		{
+			stream.close();
+		}
+		return tokens;
+	}
+
+	/**
+	 * Crea la query de los benchmarks.
+	 *
+	 * @return query
+	 */
+	static models.Query crearQuery()
+	{
+		return new models.Query(QUERY);
+	}
+}
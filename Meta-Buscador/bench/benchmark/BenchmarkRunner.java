@@ -0,0 +1,71 @@
+package benchmark;
+
+/**
+ *
+ * Clase disparadora de los benchmarks.
+ *
+ * <p>Uso: {@code java benchmark.BenchmarkRunner [expansion|analisis|payload|espectros ...]}. Sin argumentos se
+ * ejecutan todos los grupos. La configuracion se lee de propiedades del sistema:
+ * <ul>
+ * <li>{@code benchmark.calentamiento}: iteraciones de calentamiento (5).</li>
+ * <li>{@code benchmark.iteraciones}: iteraciones medidas (5).</li>
+ * <li>{@code benchmark.milis}: duracion de cada iteracion en milisegundos (500).</li>
+ * <li>{@code benchmark.semilla}: semilla del corpus sintetico (42).</li>
+ * </ul>
+ * Para resultados comparables se recomienda una JVM dedicada con heap fijo (por ejemplo -Xms1g -Xmx1g).
+ *
+ * <p>Los benchmarks estan en la carpeta de fuentes bench, separada de src: se compilan en bin-bench y no
+ * forman parte de la aplicacion. Se ejecutan con bin-bench, bin y lib en el classpath.
+ *
+ * @author Javier Fuentes (j.fuentes06@ufromail.cl)
+ * @version 1.0
+ * @since 1.0
+ */
+public class BenchmarkRunner {
+
+	/**
+	 * Metodo principal.
+	 *
+	 * @param args grupos de benchmarks a ejecutar.
+	 * @throws Exception
+	 */
+	public static void main(String[] args) throws Exception
+	{
+		Harness harness = new Harness(
+				Integer.getInteger("benchmark.calentamiento", 5),
+				Integer.getInteger("benchmark.iteraciones", 5),
+				Integer.getInteger("benchmark.milis", 500),
+				System.out);
+		Corpus corpus = new Corpus(Long.getLong("benchmark.semilla", 42L), 20000, 1.0);
+
+		if (seleccionado(args, "expansion"))
+		{
+			new ExpansionBenchmark(corpus).ejecutar(harness);
+		}
+		if (seleccionado(args, "analisis"))
+		{
+			new AnalysisBenchmark(corpus).ejecutar(harness);
+		}
+		if (seleccionado(args, "payload"))
+		{
+			new PayloadBenchmark(corpus).ejecutar(harness);
+		}
+		if (seleccionado(args, "espectros"))
+		{
+			new SpectralStoreBenchmark(corpus).ejecutar(harness);
+		}
+	}
+
+	/**
+	 * @return true si el grupo fue seleccionado (o no se selecciono ninguno).
+	 */
+	private static boolean seleccionado(String[] args, String grupo)
+	{
+		if (args.length == 0) return true;
+		for (String arg : args)
+		{
+			if (arg.equals(grupo)) return true;
+		}
+		return false;
+	}
+}
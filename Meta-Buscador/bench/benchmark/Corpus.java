@@ -0,0 +1,123 @@
+package benchmark;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ *
+ * Generador de corpus sinteticos para los benchmarks.
+ *
+ * <p>Las palabras se eligen de un vocabulario fijo con frecuencias segun la ley de Zipf, como en
+ * el texto de paginas reales: unas pocas palabras muy frecuentes y muchas palabras raras.
+ * Con la misma semilla se generan siempre los mismos datos, de modo que las mediciones antes y
+ * despues de una optimizacion son comparables.
+ *
+ * @author Javier Fuentes (j.fuentes06@ufromail.cl)
+ * @version 1.0
+ * @since 1.0
+ *
+ */
+public class Corpus {
+
+	private String[] vocabulario;
+
+	/**
+	 * Distribucion acumulada de las frecuencias del vocabulario.
+	 */
+	private double[] acumulada;
+	private long semilla;
+
+	/**
+	 * Constructor de la clase.
+	 *
+	 * @param semilla semilla de los numeros aleatorios.
+	 * @param palabras tamaño del vocabulario.
+	 * @param exponente exponente de la ley de Zipf (cerca de 1 en textos reales).
+	 */
+	public Corpus(long semilla, int palabras, double exponente)
+	{
+		this.semilla = semilla;
+		Random random = new Random(semilla);
+		vocabulario = new String[palabras];
+		acumulada = new double[palabras];
+		double suma = 0;
+		for (int i = 0; i < palabras; i++)
+		{
+			/**
+			 * Palabras de 2 a 10 letras.
+			 */
+			char[] letras = new char[2 + random.nextInt(9)];
+			for (int j = 0; j < letras.length; j++)
+			{
+				letras[j] = (char)('a' + random.nextInt(26));
+			}
+			vocabulario[i] = new String(letras) + i;
+			suma += 1/Math.pow(i + 1, exponente);
+			acumulada[i] = suma;
+		}
+		for (int i = 0; i < palabras; i++)
+		{
+			acumulada[i] /= suma;
+		}
+	}
+
+	/**
+	 * Genera un documento.
+	 *
+	 * @param palabras numero de palabras del documento.
+	 * @param query termino que se inserta en el documento.
+	 * @param apariciones numero de apariciones del termino de la query.
+	 * @param numero numero del documento (cada numero genera un documento distinto).
+	 * @return texto del documento, palabras separadas por espacios.
+	 */
+	public String documento(int palabras, String query, int apariciones, int numero)
+	{
+		Random random = new Random(semilla*31 + numero);
+		String[] texto = new String[palabras];
+		for (int i = 0; i < palabras; i++)
+		{
+			int indice = Arrays.binarySearch(acumulada, random.nextDouble());
+			texto[i] = vocabulario[Math.min(indice < 0 ? -indice - 1 : indice, vocabulario.length - 1)];
+		}
+		for (int i = 0; i < apariciones; i++)
+		{
+			texto[random.nextInt(palabras)] = query;
+		}
+
+		StringBuilder builder = new StringBuilder();
+		for (int i = 0; i < palabras; i++)
+		{
+			if (i > 0) builder.append(' ');
+			builder.append(texto[i]);
+		}
+		return builder.toString();
+	}
+
+	/**
+	 * Genera las ubicaciones de una palabra en un documento.
+	 *
+	 * @param largo largo del documento.
+	 * @param apariciones numero de apariciones (a lo mas largo).
+	 * @param numero numero de la distribucion (cada numero genera una distribucion distinta).
+	 * @return ubicaciones distintas y ordenadas, entre 1 y largo.
+	 */
+	public int[] posiciones(int largo, int apariciones, int numero)
+	{
+		Random random = new Random(semilla*31 + numero);
+		boolean[] ocupada = new boolean[largo + 1];
+		int[] posiciones = new int[apariciones];
+		for (int i = 0; i < apariciones; i++)
+		{
+			int p;
+			do
+			{
+				p = 1 + random.nextInt(largo);
+			}
+			while (ocupada[p]);
+			ocupada[p] = true;
+			posiciones[i] = p;
+		}
+		Arrays.sort(posiciones);
+		return posiciones;
+	}
+}
@@ -0,0 +1,99 @@
+package benchmark;
+
+import math.AbstractExpansion;
+
+/**
+ *
+ * Benchmarks de las expansiones del paquete {@link math}.
+ *
+ * <p>Mide {@link math.AbstractExpansion#calculateCoeffs()} y
+ * {@link math.AbstractExpansion#getExpandedFunction(double[], int, int, int, double[], double[])}
+ * para cada expansion registrada, variando el numero de apariciones de la palabra y el orden.
+ *
+ * @author Javier Fuentes (j.fuentes06@ufromail.cl)
+ * @version 1.0
+ * @since 1.0
+ *
+ */
+public class ExpansionBenchmark {
+
+	public static final String[] EXPANSIONES = {"Fourier", "Legendre", "Laguerre", "Haar"};
+	public static final int[] APARICIONES = {10, 1000, 10000};
+	public static final int[] ORDENES = {6, 30};
+
+	/**
+	 * Largo del documento por cada aparicion de la palabra.
+	 */
+	public static final int LARGO_POR_APARICION = 20;
+
+	/**
+	 * Numero de puntos de la funcion expandida.
+	 */
+	public static final int PUNTOS = 201;
+
+	private Corpus corpus;
+
+	/**
+	 * Constructor de la clase.
+	 * @param corpus generador de datos.
+	 */
+	public ExpansionBenchmark(Corpus corpus)
+	{
+		this.corpus = corpus;
+	}
+
+	/**
+	 * Ejecuta los benchmarks.
+	 *
+	 * @param harness arnes de medicion.
+	 * @throws Exception
+	 */
+	public void ejecutar(Harness harness) throws Exception
+	{
+		for (String nombre : EXPANSIONES)
+		{
+			for (int orden : ORDENES)
+			{
+				for (int apariciones : APARICIONES)
+				{
+					final int largo = apariciones*LARGO_POR_APARICION;
+					final AbstractExpansion expansion = AbstractExpansion.createExpansion(nombre);
+					expansion.setMaxOrder(orden);
+					expansion.setScale(largo);
+					expansion.setWordPositions(corpus.posiciones(largo, apariciones, apariciones));
+
+					harness.medir("calculateCoeffs", nombre + " orden=" + orden + " palabras=" + apariciones,
+							apariciones, new Harness.Operacion()
+					{
+						@Override
+						public long ejecutar()
+						{
+							return (long)expansion.calculateCoeffs()[0];
+						}
+					});
+				}
+
+				final AbstractExpansion expansion = AbstractExpansion.createExpansion(nombre);
+				final int largo = 1000;
+				final int ordenFinal = orden;
+				expansion.setMaxOrder(orden);
+				expansion.setScale(largo);
+				expansion.setWordPositions(corpus.posiciones(largo, 100, orden));
+				final double[] coeficientes = expansion.calculateCoeffs();
+				final double[] x = new double[PUNTOS];
+				final double[] y = new double[PUNTOS];
+
+				harness.medir("getExpandedFunction", nombre + " orden=" + orden + " puntos=" + PUNTOS,
+						PUNTOS, new Harness.Operacion()
+				{
+					@Override
+					public long ejecutar()
+					{
+						expansion.getExpandedFunction(coeficientes, 0, largo, ordenFinal, x, y);
+						return (long)y[PUNTOS/2];
+					}
+				});
+			}
+		}
+	}
+}
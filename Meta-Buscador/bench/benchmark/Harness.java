@@ -0,0 +1,165 @@
+package benchmark;
+
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+
+/**
+ *
+ * Arnes de medicion de los benchmarks.
+ *
+ * <p>Cada operacion se ejecuta en iteraciones de duracion fija: primero las iteraciones de calentamiento
+ * (para que el JIT compile el codigo medido), luego las iteraciones de medicion. Por cada benchmark se
+ * informa el tiempo promedio por operacion con su desviacion estandar entre iteraciones y, si la JVM lo
+ * permite, los bytes asignados por operacion (ver {@link com.sun.management.ThreadMXBean}).
+ *
+ * <p>El valor retornado por cada operacion se acumula en {@link #sumidero}, para que el JIT no elimine
+ * el codigo medido. El codigo medido no imprime por consola: cualquier salida durante la medicion aparece
+ * junto a los resultados.
+ *
+ * @author Javier Fuentes (j.fuentes06@ufromail.cl)
+ * @version 1.0
+ * @since 1.0
+ *
+ */
+public class Harness {
+
+	/**
+	 * Operacion medida.
+	 */
+	public interface Operacion
+	{
+		/**
+		 * Ejecuta la operacion una vez.
+		 * @return valor cualquiera que dependa del resultado de la operacion.
+		 * @throws Exception
+		 */
+		long ejecutar() throws Exception;
+	}
+
+	private int iteracionesCalentamiento;
+	private int iteracionesMedicion;
+	private long nanosIteracion;
+	private PrintStream salida;
+
+	/**
+	 * Acumulador de los valores retornados por las operaciones.
+	 */
+	private volatile long sumidero;
+
+	/**
+	 * Constructor de la clase.
+	 *
+	 * @param iteracionesCalentamiento numero de iteraciones sin medicion.
+	 * @param iteracionesMedicion numero de iteraciones medidas.
+	 * @param milisIteracion duracion de cada iteracion en milisegundos.
+	 * @param salida stream donde se escriben los resultados.
+	 */
+	public Harness(int iteracionesCalentamiento, int iteracionesMedicion, int milisIteracion, PrintStream salida)
+	{
+		this.iteracionesCalentamiento = iteracionesCalentamiento;
+		this.iteracionesMedicion = iteracionesMedicion;
+		this.nanosIteracion = milisIteracion * 1000000L;
+		this.salida = salida;
+	}
+
+	/**
+	 * Mide una operacion y escribe una linea con el resultado.
+	 *
+	 * @param nombre nombre del benchmark.
+	 * @param parametros parametros del benchmark (por ejemplo el tamaño del documento).
+	 * @param unidades numero de unidades (por ejemplo tokens) procesadas por operacion,
+	 *  para informar tambien el tiempo por unidad.
+	 * @param operacion operacion medida.
+	 * @throws Exception
+	 */
+	public void medir(String nombre, String parametros, int unidades, Operacion operacion) throws Exception
+	{
+		double[] nanosPorOperacion = new double[iteracionesMedicion];
+		for (int i = 0; i < iteracionesCalentamiento; i++)
+		{
+			this.iteracion(operacion, null);
+		}
+		long operaciones = 0;
+		long bytes = 0;
+		long[] medicion = new long[2];
+		for (int i = 0; i < iteracionesMedicion; i++)
+		{
+			long inicio = System.nanoTime();
+			long n = this.iteracion(operacion, medicion);
+			nanosPorOperacion[i] = (double)(System.nanoTime() - inicio) / n;
+			operaciones += n;
+			bytes += medicion[0];
+		}
+		double bytesPorOperacion = bytes >= 0 ? (double)bytes / operaciones : Double.NaN;
+
+		/**
+		 * Promedio y desviacion estandar entre iteraciones.
+		 */
+		double promedio = 0;
+		for (double v : nanosPorOperacion) promedio += v;
+		promedio /= nanosPorOperacion.length;
+		double varianza = 0;
+		for (double v : nanosPorOperacion) varianza += (v - promedio)*(v - promedio);
+		double desviacion = nanosPorOperacion.length > 1 ? Math.sqrt(varianza/(nanosPorOperacion.length - 1)) : 0;
+
+		salida.println(String.format("%-28s %-32s %14.1f +- %-10.1f ns/op %12.1f ns/unidad %14.1f B/op",
+				nombre, parametros, promedio, desviacion, promedio/unidades, bytesPorOperacion));
+	}
+
+	/**
+	 * Ejecuta la operacion durante una iteracion.
+	 *
+	 * @param operacion operacion medida.
+	 * @param medicion si no es null, recibe en la posicion 0 los bytes asignados durante la iteracion
+	 *  (-1 si la JVM no lo permite).
+	 * @return numero de operaciones ejecutadas.
+	 * @throws Exception
+	 */
+	private long iteracion(Operacion operacion, long[] medicion) throws Exception
+	{
+		long bytesInicio = bytesAsignados();
+		long fin = System.nanoTime() + nanosIteracion;
+		long n = 0;
+		long acumulado = 0;
+		do
+		{
+			acumulado += operacion.ejecutar();
+			n++;
+		}
+		while (System.nanoTime() < fin);
+		long bytesFin = bytesAsignados();
+		sumidero += acumulado;
+		if (medicion != null)
+		{
+			medicion[0] = bytesInicio < 0 ? -1 : bytesFin - bytesInicio;
+		}
+		return n;
+	}
+
+	/**
+	 * Bytes asignados por el thread actual.
+	 *
+	 * @return bytes asignados, -1 si la JVM no permite la medicion.
+	 */
+	private static long bytesAsignados()
+	{
+		java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		if (bean instanceof com.sun.management.ThreadMXBean)
+		{
+			com.sun.management.ThreadMXBean sunBean = (com.sun.management.ThreadMXBean)bean;
+			if (sunBean.isThreadAllocatedMemorySupported() && sunBean.isThreadAllocatedMemoryEnabled())
+			{
+				return sunBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * @return valor acumulado de las operaciones.
+	 */
+	public long getSumidero()
+	{
+		return sumidero;
+	}
+}
@@ -0,0 +1,94 @@
+package benchmark;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.search.CollectionStatistics;
+import org.apache.lucene.search.TermStatistics;
+import org.apache.lucene.search.similarities.Similarity;
+import org.apache.lucene.store.RAMDirectory;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.Version;
+
+import search.Constants;
+import search.PayloadCodec;
+import search.PositionAnalyzer;
+import search.PayloadSimilarity;
+
+/**
+ *
+ * Benchmark de la lectura de payloads en {@link search.PayloadSimilarity}.
+ *
+ * <p>Los payloads se generan con {@link search.PayloadCodec} y se leen todos en cada operacion.
+ * Se guardan en un solo arreglo, con offsets distintos de 0 como en las postings del indice. Se leen con
+ * el {@link org.apache.lucene.search.similarities.Similarity.SimScorer} del termino de la query sobre un
+ * segmento de un indice en memoria, como al buscar.
+ *
+ * @author Javier Fuentes (j.fuentes06@ufromail.cl)
+ * @version 1.0
+ * @since 1.0
+ *
+ */
+public class PayloadBenchmark {
+
+	public static final int PAYLOADS = 1024;
+
+	private Corpus corpus;
+
+	/**
+	 * Constructor de la clase.
+	 * @param corpus generador de datos.
+	 */
+	public PayloadBenchmark(Corpus corpus)
+	{
+		this.corpus = corpus;
+	}
+
+	/**
+	 * Ejecuta los benchmarks.
+	 *
+	 * @param harness arnes de medicion.
+	 * @throws Exception
+	 */
+	public void ejecutar(Harness harness) throws Exception
+	{
+		byte[] bytes = new byte[PAYLOADS * PayloadCodec.LARGO];
+		final BytesRef[] payloads = new BytesRef[PAYLOADS];
+		for (int i = 0; i < PAYLOADS; i++)
+		{
+			PayloadCodec.codificar(i/(float)PAYLOADS, 6, bytes, i * PayloadCodec.LARGO);
+			payloads[i] = new BytesRef(bytes, i * PayloadCodec.LARGO, PayloadCodec.LARGO);
+		}
+		PayloadSimilarity similarity = new PayloadSimilarity(AnalysisBenchmark.crearQuery());
+
+		RAMDirectory directorio = new RAMDirectory();
+		IndexWriter writer = new IndexWriter(directorio, new IndexWriterConfig(Version.LATEST, new PositionAnalyzer()));
+		Document doc = new Document();
+		doc.add(new TextField(Constants.CONTENTS, corpus.documento(100, AnalysisBenchmark.QUERY, 8, 0), Field.Store.NO));
+		writer.addDocument(doc);
+		writer.close();
+		DirectoryReader reader = DirectoryReader.open(directorio);
+		Similarity.SimWeight peso = similarity.computeWeight(1.0F,
+				new CollectionStatistics(Constants.CONTENTS, 1, 1, 100, 100),
+				new TermStatistics(new BytesRef(AnalysisBenchmark.QUERY), 1, 8));
+		final Similarity.SimScorer scorer = similarity.simScorer(peso, reader.leaves().get(0));
+
+		harness.medir("computePayloadFactor", "payloads=" + PAYLOADS, PAYLOADS, new Harness.Operacion()
+		{
+			@Override
+			public long ejecutar()
+			{
+				float suma = 0;
+				for (int i = 0; i < PAYLOADS; i++)
+				{
+					suma += scorer.computePayloadFactor(0, i, i + 1, payloads[i]);
+				}
+				return (long)suma;
+			}
+		});
+		reader.close();
+	}
+}
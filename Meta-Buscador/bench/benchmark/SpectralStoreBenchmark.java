@@ -0,0 +1,148 @@
+package benchmark;
+
+import java.io.File;
+import java.util.Arrays;
+
+import math.SpectralVector;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.AtomicReaderContext;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.store.RAMDirectory;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.Version;
+
+import search.Constants;
+import search.PayloadAnalyzer;
+import search.PositionAnalyzer;
+import search.PostingsSpectra;
+import search.SpectralSource;
+import search.SpectralStore;
+import search.SpectralStoreWriter;
+
+/**
+ *
+ * Benchmark de la lectura de los coeficientes de cada (documento, palabra) al buscar.
+ *
+ * <p>El archivo se genera en un directorio temporal analizando documentos del corpus con
+ * {@link search.PayloadAnalyzer}, en cada formato denso de {@link math.SpectralVector}. Cada operacion
+ * busca la palabra de la query en todos los documentos y calcula su similitud con coeficientes fijos.
+ *
+ * <p>Tambien se miden los coeficientes calculados desde las postings ({@link search.PostingsSpectra}), sobre un
+ * indice en memoria con las mismas paginas: con cache de un solo par (se calculan en cada lectura) y con cache
+ * para todos los documentos.
+ *
+ * @author Javier Fuentes (j.fuentes06@ufromail.cl)
+ * @version 1.0
+ * @since 1.0
+ *
+ */
+public class SpectralStoreBenchmark {
+
+	public static final int DOCUMENTOS = 256;
+	public static final int PALABRAS = 1000;
+
+	private Corpus corpus;
+
+	/**
+	 * Constructor de la clase.
+	 * @param corpus generador de datos.
+	 */
+	public SpectralStoreBenchmark(Corpus corpus)
+	{
+		this.corpus = corpus;
+	}
+
+	/**
+	 * Ejecuta los benchmarks.
+	 *
+	 * @param harness arnes de medicion.
+	 * @throws Exception
+	 */
+	public void ejecutar(Harness harness) throws Exception
+	{
+		SpectralVector.Format[] formatos = {SpectralVector.Format.FLOAT32, SpectralVector.Format.FLOAT16,
+				SpectralVector.Format.INT8};
+		for (SpectralVector.Format formato : formatos)
+		{
+			File archivo = File.createTempFile("espectros", ".spc");
+			archivo.deleteOnExit();
+			SpectralStoreWriter escritor = new SpectralStoreWriter(archivo, formato);
+			for (int d = 0; d < DOCUMENTOS; d++)
+			{
+				escritor.setDocumento(d);
+				Analyzer analyzer = new PayloadAnalyzer(AnalysisBenchmark.crearQuery(), 1.0F, escritor);
+				AnalysisBenchmark.consumir(analyzer, corpus.documento(PALABRAS, AnalysisBenchmark.QUERY, 8, d));
+			}
+			escritor.close();
+
+			final SpectralStore espectros = new SpectralStore(archivo);
+			final BytesRef termino = new BytesRef(AnalysisBenchmark.QUERY);
+			final double[] coeficientes = new double[Constants.ORDEN_EXPANSION + 1];
+			Arrays.fill(coeficientes, 1.0);
+			harness.medir("SpectralStore.buscar", formato + " documentos=" + DOCUMENTOS
+					+ " bytes=" + archivo.length(), DOCUMENTOS, new Harness.Operacion()
+			{
+				@Override
+				public long ejecutar()
+				{
+					double suma = 0;
+					for (int d = 0; d < DOCUMENTOS; d++)
+					{
+						int vector = espectros.buscar(d, termino);
+						if (vector >= 0)
+						{
+							suma += espectros.producto(vector, coeficientes, 0, coeficientes.length)
+									/ espectros.sumaCuadrados(vector);
+						}
+					}
+					return (long)suma;
+				}
+			});
+			espectros.close();
+		}
+
+		RAMDirectory directorio = new RAMDirectory();
+		IndexWriter writer = new IndexWriter(directorio, new IndexWriterConfig(Version.LATEST, new PositionAnalyzer()));
+		for (int d = 0; d < DOCUMENTOS; d++)
+		{
+			String texto = corpus.documento(PALABRAS, AnalysisBenchmark.QUERY, 8, d);
+			Document doc = new Document();
+			doc.add(new TextField(Constants.CONTENTS, texto, Field.Store.NO));
+			doc.add(new NumericDocValuesField(Constants.LARGO, PositionAnalyzer.contarPalabras(texto)));
+			writer.addDocument(doc);
+		}
+		writer.forceMerge(1);
+		writer.close();
+		DirectoryReader reader = DirectoryReader.open(directorio);
+		final AtomicReaderContext segmento = reader.leaves().get(0);
+		final BytesRef termino = new BytesRef(AnalysisBenchmark.QUERY);
+		final double[] coeficientes = new double[Constants.ORDEN_EXPANSION + 1];
+		for (int capacidad : new int[] {1, DOCUMENTOS})
+		{
+			final SpectralSource.Lector lector = new PostingsSpectra(Constants.CONTENTS, Constants.EXPANSION,
+					Constants.ORDEN_EXPANSION, capacidad).lector(segmento);
+			harness.medir("PostingsSpectra.leer", "capacidad=" + capacidad + " documentos=" + DOCUMENTOS,
+					DOCUMENTOS, new Harness.Operacion()
+			{
+				@Override
+				public long ejecutar() throws Exception
+				{
+					long suma = 0;
+					for (int d = 0; d < DOCUMENTOS; d++)
+					{
+						suma += lector.leer(d, termino, coeficientes, 0);
+					}
+					return suma;
+				}
+			});
+		}
+		reader.close();
+	}
+}
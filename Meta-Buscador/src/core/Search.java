@@ -135,6 +135,12 @@ public class Search {
 			rr = searcher.result();
 		} catch (IOException e) {
 			e.printStackTrace();
+		} finally {
+			try {
+				searcher.close();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
 		}
 		/**
 		 * Se retorna los resultados.
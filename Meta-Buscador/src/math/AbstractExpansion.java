@@ -10,6 +10,10 @@ import exception.IllegalExpansionException;
  *   only the values 0 and 1.
  * * This class contains the static factory method createExpansion() to create 
  *   concrete expansions.
+ * * The calculations are delegated to a stateless ExpansionKernel, which may
+ *   be shared by many expansions (and threads). An expansion itself keeps
+ *   the word distribution, the scale, the order and the coefficients and is
+ *   therefore not thread-safe.
  *
  * @author Ralph Kretschmer
  * @version 0.1, 21.02.2009
@@ -45,6 +49,11 @@ public abstract class AbstractExpansion {
      */
     protected double[] coeffs;
     
+    /**
+     * Kernel doing the actual calculations
+     */
+    protected ExpansionKernel kernel;
+    
     /**
      * Protected constructor
      * 
@@ -53,9 +62,12 @@ public abstract class AbstractExpansion {
      * should have a protected constructor. This constructor has to set the
      * default value of the property maxOrder.
      * 
+     * @param kernel The kernel doing the calculations
      * @see createExpansion()
      */
-    protected AbstractExpansion() {}
+    protected AbstractExpansion(ExpansionKernel kernel) {
+    	this.kernel = kernel;
+    }
     
     /**
      * Sets the word distribution to be expanded
@@ -105,14 +117,26 @@ public abstract class AbstractExpansion {
     	return scale;
     }
     
+    public ExpansionKernel getKernel() {
+    	return kernel;
+    }
+    
     /**
      * Whether or not the expansion has a variable length scale
      * 
-     * This method has to be overridden for expansions with variable length
-     * scale.
+     * @see ExpansionKernel.hasVariableScale()
      */
     public boolean hasVariableScale() {
-    	return false;
+    	return kernel.hasVariableScale();
+    }
+    
+    /**
+     * Whether or not the expansion functions are periodic
+     * 
+     * @see ExpansionKernel.isPeriodic()
+     */
+    public boolean isPeriodic() {
+    	return kernel.isPeriodic();
     }
     
     /**
@@ -123,7 +147,101 @@ public abstract class AbstractExpansion {
      * 
      * @return Array containing the expansion coefficients
      */ 
-    public abstract double[] calculateCoeffs();
+    public double[] calculateCoeffs() {
+    	coeffs = new double[maxOrder + 1];
+    	if (wordPositions != null) {
+    	    calculateCoeffs(wordPositions, 0, wordPositions.length, coeffs, 0);
+    	}
+    	return coeffs;
+    }
+    
+    /**
+     * Calculates the expansion coefficients of several word distributions at
+     * once
+     * 
+     * The word distributions (e. g. of all terms of a document) are given in
+     * one array: the positions of distribution t are 
+     * positions[offsets[t]], ..., positions[offsets[t + 1] - 1]. The 
+     * coefficients c_0, ..., c_maxOrder of distribution t are written to row t
+     * of a dense matrix, i. e. to matrix[t * (maxOrder + 1) + n].
+     * 
+     * The properties wordPositions and coeffs are neither used nor changed.
+     * 
+     * @param positions Word positions of all distributions
+     * @param offsets Start of every distribution in positions, followed by
+     *  the end of the last one (length: number of distributions + 1)
+     * @param matrix Array for the results, may be null or too short, in which
+     *  case a new array is allocated
+     * @return The coefficient matrix
+     */
+    public double[] calculateCoeffs(int[] positions, int[] offsets, 
+	    double[] matrix) {
+    	int numberDistributions = offsets.length - 1;
+    	int width = maxOrder + 1;
+    	if (matrix == null || matrix.length < numberDistributions * width) {
+    	    matrix = new double[numberDistributions * width];
+    	}
+    	for (int t = 0; t < numberDistributions; t++) {
+    	    calculateCoeffs(positions, offsets[t], offsets[t + 1], matrix, 
+    		    t * width);
+    	}
+    	return matrix;
+    }
+    
+    /**
+     * Calculates the coefficients c_0, c_1, ..., c_maxOrder of the word 
+     * distribution positions[from], ..., positions[to - 1]
+     * 
+     * The calculation is done by the kernel with the current scale and 
+     * maxOrder; the properties wordPositions and coeffs are not used.
+     * 
+     * @param positions Array containing the word positions
+     * @param from First index of the distribution in positions (inclusive)
+     * @param to Last index of the distribution in positions (exclusive)
+     * @param out Array for the results
+     * @param outOffset Index in out for c_0; the values 
+     *  out[outOffset], ..., out[outOffset + maxOrder] are overwritten
+     */
+    protected void calculateCoeffs(int[] positions, int from, int to,
+	    double[] out, int outOffset) {
+    	kernel.coeffs(positions, from, to, scale, maxOrder, out, outOffset);
+    }
+    
+    /**
+     * Returns the smallest order that captures a given fraction of the energy
+     * of a word distribution
+     * 
+     * The energy is measured in the expansion's own normalization: the 
+     * partial sums \sum_{n <= N} c_n^2 are compared with the same sum taken 
+     * up to maxOrder, i. e. with the energy the complete coefficient vector 
+     * represents. (Parseval's identity against \int f^2 would only hold for 
+     * orthonormal functions on [0, scale] and for the complete expansion; the
+     * kernels use other normalizations, so such a target is never reached.)
+     * 
+     * @param coeffs Array containing the coefficients c_0, ..., c_maxOrder
+     * @param coeffsOffset Index of c_0 in coeffs
+     * @param threshold Fraction of the energy to be captured (e. g. 0.9)
+     * @param minOrder Smallest order returned
+     * @return The order, between minOrder and maxOrder
+     */
+    public int selectOrder(double[] coeffs, int coeffsOffset, 
+	    double threshold, int minOrder) {
+    	if (minOrder >= maxOrder) {
+    	    return maxOrder;
+    	}
+    	double energy = Kernels.sumOfSquares(coeffs, coeffsOffset, 
+    		maxOrder + 1);
+    	double target = threshold * energy;
+    	double sum = 0;
+    	for (int n = 0; n < maxOrder; n++) {
+    	    double c = coeffs[coeffsOffset + n];
+    	    sum += c * c;
+    	    if (n >= minOrder && sum >= target) {
+    		return n;
+    	    }
+    	}
+    	return maxOrder;
+    }
     
     /**
      * Returns the previously calculated expansion coefficients
@@ -149,12 +267,65 @@ public abstract class AbstractExpansion {
      *  coefficients c_0 up to c_order are taken into account)
      * @return Array containing arrays for the x and y values
      */
-    public abstract double[][] getExpandedFunction(int documentLength, int order);
+    public double[][] getExpandedFunction(int documentLength, int order) {
+        // 201 points are calculated
+        double[] xValues = new double[201];
+        double[] yValues = new double[xValues.length];
+        getExpandedFunction(coeffs, 0, documentLength, order, xValues, 
+        	yValues);
+        
+        double[][] results = {xValues, yValues};
+        
+        return results;
+    }
+    
+    /**
+     * Calculates the expanded function into caller-supplied arrays
+     * 
+     * Like getExpandedFunction(int, int), but the number of points is given 
+     * by the length of the arrays (at least 2), nothing is allocated, and the
+     * coefficients are read from an arbitrary array, e. g. a row of the 
+     * matrix returned by calculateCoeffs(int[], int[], double[]). The sums 
+     * are evaluated by the kernel with Clenshaw's algorithm, i. e. the 
+     * expansion functions themselves are never evaluated for n > 1.
+     * 
+     * @param coeffs Array containing the coefficients c_0, ..., c_order
+     * @param coeffsOffset Index of c_0 in coeffs
+     * @param documentLength Length of the document (maximum x value)
+     * @param order Order up to which the expansion is calculated
+     * @param xValues Array for the x values
+     * @param yValues Array for the y values (same length as xValues)
+     */
+    public void getExpandedFunction(double[] coeffs, int coeffsOffset,
+	    int documentLength, int order, double[] xValues, double[] yValues) {
+    	kernel.expandedFunction(coeffs, coeffsOffset, scale, documentLength, 
+    		order, xValues, yValues);
+    }
+    
+    /**
+     * Fills the array of x values for getExpandedFunction()
+     * 
+     * The x values are equally spaced in the interval [0, documentLength].
+     * 
+     * @param documentLength Length of the document (maximum x value)
+     * @param xValues Array for the x values (length at least 2)
+     */
+    protected static void fillXValues(int documentLength, double[] xValues) {
+        if (xValues.length < 2) {
+            throw new IllegalArgumentException("At least 2 points are needed.");
+        }
+        double spacing = (double)documentLength / (xValues.length - 1);
+        for (int i = 0; i < xValues.length; i++) {
+            xValues[i] = spacing * i;
+        }
+    }
     
     /**
      * Factory method to create concrete expansions
      * 
-     * Every concrete expansion has to be listed here.
+     * The expansion is looked up by name in the ExpansionRegistry, i. e. 
+     * every kernel registered in META-INF/services/math.ExpansionKernel can
+     * be created here.
      * 
      * @param expansionName
      * @return A concrete expansion
@@ -162,14 +333,10 @@ public abstract class AbstractExpansion {
      */
     public static AbstractExpansion createExpansion(String expansionName) 
     	    throws IllegalExpansionException {
-				if (expansionName.equals("Fourier")) {
-				    return new Fourier();
-				} else if (expansionName.equals("Legendre")) {
-				    return new Legendre();    
-				} else if (expansionName.equals("Laguerre")) {
-				    return new Laguerre();
-				} else {
-				    throw new IllegalExpansionException();
-				}
+    	ExpansionKernel kernel = ExpansionRegistry.getKernel(expansionName);
+    	if (kernel == null) {
+    	    throw new IllegalExpansionException();
+    	}
+    	return kernel.newExpansion();
     }
 }
@@ -0,0 +1,97 @@
+package math;
+
+/**
+ * Stateless calculation kernel of an expansion
+ *
+ * Contrary to AbstractExpansion, which keeps the word distribution, the
+ * scale, the order and the coefficients as properties, a kernel receives
+ * everything as parameters and keeps no mutable state. A single kernel
+ * instance can therefore be used by many indexing and query threads at the
+ * same time, and precomputed tables (see FourierTable) are shared between
+ * them.
+ *
+ * Kernels are found with java.util.ServiceLoader (see ExpansionRegistry):
+ * a new expansion is added by implementing this interface (with a public
+ * constructor without parameters) and listing the class in
+ * META-INF/services/math.ExpansionKernel. No factory has to be edited.
+ *
+ * @author Javier Fuentes (j.fuentes06@ufromail.cl)
+ * @version 1.0
+ */
+public interface ExpansionKernel {
+
+    /**
+     * @return Name of the expansion, e. g. "Fourier" (see
+     *  AbstractExpansion.createExpansion())
+     */
+    String getName();
+
+    /**
+     * @return Whether or not the expansion has a variable length scale
+     */
+    boolean hasVariableScale();
+
+    /**
+     * Whether or not the expansion functions are periodic in [0, scale]
+     *
+     * The beginning and the end of a document influence each other in a
+     * periodic expansion, so that users may want to pad the document.
+     *
+     * @return false by default
+     */
+    default boolean isPeriodic() {
+	return false;
+    }
+
+    /**
+     * @return Order used by newly created expansions
+     */
+    int getDefaultOrder();
+
+    /**
+     * Calculates the coefficients c_0, c_1, ..., c_order of the word
+     * distribution positions[from], ..., positions[to - 1]
+     *
+     * Implementations must not allocate memory that depends on the number of
+     * words and must not keep any state between calls.
+     *
+     * @param positions Array containing the word positions
+     * @param from First index of the distribution in positions (inclusive)
+     * @param to Last index of the distribution in positions (exclusive)
+     * @param scale Length-scale parameter (larger than 0)
+     * @param order Order of the expansion
+     * @param out Array for the results
+     * @param outOffset Index in out for c_0; the values
+     *  out[outOffset], ..., out[outOffset + order] are overwritten
+     */
+    void coeffs(int[] positions, int from, int to, double scale, int order,
+	    double[] out, int outOffset);
+
+    /**
+     * Calculates the coefficients c_0, c_1, ..., c_order of all positions
+     *
+     * @see coeffs(int[], int, int, double, int, double[], int)
+     */
+    default void coeffs(int[] positions, double scale, int order,
+	    double[] out) {
+	coeffs(positions, 0, positions.length, scale, order, out, 0);
+    }
+
+    /**
+     * Calculates the expanded function y = \sum c_n phi_n(x) at equally
+     * spaced points in [0, documentLength]
+     *
+     * @see AbstractExpansion.getExpandedFunction()
+     */
+    void expandedFunction(double[] coeffs, int coeffsOffset, double scale,
+	    int documentLength, int order, double[] xValues, double[] yValues);
+
+    /**
+     * Creates a (stateful) expansion that uses this kernel
+     *
+     * @return A new expansion
+     */
+    default AbstractExpansion newExpansion() {
+	return new KernelExpansion(this);
+    }
+}
@@ -0,0 +1,62 @@
+package math;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.ServiceLoader;
+import java.util.Set;
+
+/**
+ * Registry of all available expansion kernels
+ *
+ * The kernels are found once with java.util.ServiceLoader, i. e. every
+ * class listed in a file META-INF/services/math.ExpansionKernel on the class
+ * path is registered under its name. The registry is immutable after
+ * loading and can be used from any thread.
+ *
+ * @author Javier Fuentes (j.fuentes06@ufromail.cl)
+ * @version 1.0
+ */
+public final class ExpansionRegistry {
+
+    /**
+     * Lazy loading of the kernels (initialization-on-demand holder)
+     */
+    private static final class Holder {
+	static final Map<String, ExpansionKernel> kernels = load();
+    }
+
+    /**
+     * Private constructor, this class only has static methods
+     */
+    private ExpansionRegistry() {}
+
+    private static Map<String, ExpansionKernel> load() {
+	Map<String, ExpansionKernel> kernels =
+		new LinkedHashMap<String, ExpansionKernel>();
+	for (ExpansionKernel kernel : ServiceLoader.load(ExpansionKernel.class,
+		ExpansionRegistry.class.getClassLoader())) {
+	    if (!kernels.containsKey(kernel.getName())) {
+		kernels.put(kernel.getName(), kernel);
+	    }
+	}
+	return Collections.unmodifiableMap(kernels);
+    }
+
+    /**
+     * Returns the kernel of an expansion
+     *
+     * @param name Name of the expansion, e. g. "Fourier"
+     * @return The (shared) kernel or null if there is no such expansion
+     */
+    public static ExpansionKernel getKernel(String name) {
+	return Holder.kernels.get(name);
+    }
+
+    /**
+     * @return Names of all registered expansions
+     */
+    public static Set<String> getNames() {
+	return Holder.kernels.keySet();
+    }
+}
@@ -16,6 +16,24 @@ package math;
  * coefficients. Then the array coeffs is given by coeffs[0] = a_0, 
  * coeffs[1] = b_1, coeffs[2] = a_1, coeffs[3] = b_2, and so on. 
  * 
+ * If the length scale is an integer, the trigonometric functions are taken 
+ * from a shared table of roots of unity (see FourierTable). Documents longer
+ * than FourierTable.MAX_LENGTH words use the recurrence of the high-order 
+ * mode instead.
+ * 
+ * In high-order mode (see setHighOrder()) all orders for one word position 
+ * are calculated with the angle-addition recurrence, seeded by one sine-cosine
+ * pair and re-seeded every RESEED_INTERVAL orders to bound the rounding 
+ * drift. This makes orders of some hundreds affordable. If the Vector API 
+ * kernels are used (see Kernels), the recurrence is calculated for several
+ * words at once and used for every order.
+ * 
+ * In binned mode (see setBinsPerOrder()) the positions of frequent words are
+ * first collected in a histogram with a fixed number of bins, so that the 
+ * cost no longer grows with the number of occurrences times the order.
+ * 
+ * The calculations are done by FourierKernel.
+ * 
  * ****************************************************************************
  * This class is modeled after FourierExpansionGeneral.java and 
  * FourierExpansion2.java and should therefore be correct.
@@ -28,114 +46,92 @@ package math;
 public class Fourier extends AbstractExpansion {
     
     /**
-     * For the Fourier expansion the length scale is the document length
+     * Order from which the high-order mode is recommended
      */
-    @Override
-    public boolean hasVariableScale() {
-	return false;
-    }
+    public static final int HIGH_ORDER = 32;
+    
+    /**
+     * Number of recurrence steps after which sine and cosine are calculated
+     * exactly again in high-order mode
+     */
+    public static final int RESEED_INTERVAL = 32;
+    
+    /**
+     * Kernels without and with high-order mode (shared by all instances)
+     */
+    private static final FourierKernel kernelDefault = new FourierKernel(false);
+    private static final FourierKernel kernelHighOrder = new FourierKernel(true);
+    
+    /**
+     * Number of histogram bins per coefficient in binned mode (0: off)
+     */
+    private int binsPerOrder = 0;
+    
+    /**
+     * Histogram used in binned mode (reused between calls)
+     */
+    private double[] histogram = null;
     
     /**
      * Protected constructor
      */
-    public Fourier() {
+    protected Fourier() {
+    	super(kernelDefault);
     	maxOrder = 30;
     }    
     
     /**
-     * Calculates maxOrder + 1 Fourier coefficients a_0, b_1, a_1, b_2, a_2, ... 
+     * Switches the high-order mode on or off
      * 
-     * @see AbstractExpansion.calculateCoeffs()
+     * @param highOrder Whether or not all orders of a word position are 
+     *  calculated by recurrence
      */
-    @Override
-    public double[] calculateCoeffs() {
-        coeffs = new double[maxOrder + 1];
-        // Initialization
-        for (int n = 0; n <= maxOrder; n++) {
-            coeffs[n] = 0;
-        }
-        
-        if (wordPositions != null) {
-            // Zeroth order
-            int numberWords = wordPositions.length;
-            coeffs[0] = (double)numberWords / Math.sqrt(scale);
-
-            // Higher orders
-            for (int n = 1; n <= maxOrder; n++) {
-        	// nEff assumes values 1, 1, 2, 2, ...
-        	int nEff = (n + 1) / 2;
-        	if (n % 2 == 0) {
-        	    // n even: cosine coefficients
-        	    double a_coeff =  1 / (nEff * Math.PI) * Math.sqrt(scale / 2);
-        	    double a_sumCoeff = 0;
-        	    for (int i = 0; i < numberWords; i++) {
-        		a_sumCoeff += Math.sin(2 * nEff * Math.PI * wordPositions[i] 
-                            / scale);
-        		a_sumCoeff -= Math.sin(2 * nEff * Math.PI * (wordPositions[i]-1) 
-        		    / scale);
-        	    }
-        	    coeffs[n] = a_coeff * a_sumCoeff;
-        	} else {
-        	    // n odd: sine coefficients
-        	    double b_coeff = -1 / (nEff * Math.PI) * Math.sqrt(scale / 2);
-        	    double b_sumCoeff = 0;
-        	    for (int i = 0; i < numberWords; i++) {
-        		b_sumCoeff += Math.cos(2 * nEff * Math.PI * wordPositions[i] 
-        		    / scale);
-        		b_sumCoeff -= Math.cos(2 * nEff * Math.PI * (wordPositions[i]-1) 
-        		    / scale);
-        	    }
-        	    coeffs[n] = b_coeff * b_sumCoeff;
-            	}
-            }
-        }
-        
-        return coeffs;
+    public void setHighOrder(boolean highOrder) {
+    	kernel = highOrder ? kernelHighOrder : kernelDefault;
+    }
+    
+    public boolean isHighOrder() {
+    	return kernel == kernelHighOrder;
     }
     
     /**
-     * Calculates the Fourier expanded function
+     * Switches the binned mode on or off
      * 
-     * @see AbstractExpansion.getExpandedFunction()
+     * In binned mode a word distribution with more words than bins is 
+     * expanded from a histogram with binsPerOrder * (maxOrder + 1) bins (see
+     * FourierKernel.coeffsBinned()). Rarer words are still calculated 
+     * exactly. Within a bin the positions of the words are lost, so 
+     * binsPerOrder should be at least 8 (relative error about 1%).
+     * 
+     * @param binsPerOrder Number of bins per coefficient, 0 switches the
+     *  binned mode off
+     */
+    public void setBinsPerOrder(int binsPerOrder) {
+    	this.binsPerOrder = binsPerOrder;
+    }
+    
+    public int getBinsPerOrder() {
+    	return binsPerOrder;
+    }
+    
+    /**
+     * Calculates the coefficients of a word distribution, from a histogram
+     * if the binned mode is on and the distribution has more words than bins
      * 
-     * TODO RK: Changed. This has to be checked very carefully.
+     * @see AbstractExpansion.calculateCoeffs(int[], int, int, double[], int)
      */
     @Override
-    public double[][] getExpandedFunction(int documentLength, int order) {
-        // 201 points are calculated
-        double spacing = 0.005 * documentLength;    	
-        
-        // Array with x values
-        double[] xValues = new double[201];
-        for (int i = 0; i <= 200; i++) {
-            xValues[i] = spacing * i;
-        }        
-        
-        // Array with y values
-        double[] yValues = new double[xValues.length];
-        for (int i = 0; i < xValues.length; i++) {
-            // Constant
-            yValues[i] = coeffs[0] / Math.sqrt((double)documentLength);
-            // Sum
-            for (int n = 1; n <= order; n++) {
-        	// nEff assumes values 1, 1, 2, 2, ...
-        	int nEff = (n + 1) / 2;
-        	if (n % 2 == 0) {
-        	    // n even: cosine components
-        	    yValues[i] += coeffs[n] * Math.sqrt(2 / (double)documentLength)
-        	    	    * Math.cos(2 * Math.PI * nEff * xValues[i] 
-        	    	    / (double)documentLength);
-        	} else {
-        	    // n odd: sine components
-        	    yValues[i] += coeffs[n] * Math.sqrt(2 / (double)documentLength)
-    			    * Math.sin(2 * Math.PI * nEff * xValues[i] 
-    			    / (double)documentLength);
-        	}
-            }
-        }
-        
-        double[][] results = {xValues, yValues};
-        
-    	return results;
+    protected void calculateCoeffs(int[] positions, int from, int to,
+	    double[] out, int outOffset) {
+    	int bins = binsPerOrder * (maxOrder + 1);
+    	if (bins > 0 && to - from > bins) {
+    	    if (histogram == null || histogram.length < bins) {
+    		histogram = new double[bins];
+    	    }
+    	    FourierKernel.coeffsBinned(positions, from, to, scale, maxOrder, 
+    		    bins, histogram, out, outOffset);
+    	} else {
+    	    super.calculateCoeffs(positions, from, to, out, outOffset);
+    	}
     }
 }
@@ -0,0 +1,340 @@
+package math;
+
+/**
+ * Kernel of the Fourier expansion
+ * 
+ * This class contains the actual calculations of the Fourier expansion (see 
+ * Fourier for the definitions). It keeps no mutable state and can be used
+ * from any number of threads.
+ * 
+ * @author Javier Fuentes (j.fuentes06@ufromail.cl)
+ * @version 1.0
+ */
+public class FourierKernel implements ExpansionKernel {
+    
+    /**
+     * Whether or not the high-order mode is always used
+     */
+    private final boolean highOrder;
+    
+    /**
+     * Whether or not the high-order mode is chosen by the order (from 
+     * Fourier.HIGH_ORDER upwards)
+     */
+    private final boolean automatic;
+    
+    /**
+     * Constructor, the high-order mode is chosen by the order
+     */
+    public FourierKernel() {
+    	this.highOrder = false;
+    	this.automatic = true;
+    }
+    
+    /**
+     * Constructor
+     * 
+     * @param highOrder Whether or not all orders of a word position are 
+     *  calculated by recurrence (see Fourier.setHighOrder())
+     */
+    public FourierKernel(boolean highOrder) {
+    	this.highOrder = highOrder;
+    	this.automatic = false;
+    }
+    
+    @Override
+    public String getName() {
+    	return "Fourier";
+    }
+    
+    /**
+     * For the Fourier expansion the length scale is the document length
+     */
+    @Override
+    public boolean hasVariableScale() {
+    	return false;
+    }
+    
+    /**
+     * The Fourier expansion functions are periodic with period scale
+     */
+    @Override
+    public boolean isPeriodic() {
+    	return true;
+    }
+    
+    @Override
+    public int getDefaultOrder() {
+    	return 30;
+    }
+    
+    public boolean isHighOrder() {
+    	return highOrder;
+    }
+    
+    @Override
+    public AbstractExpansion newExpansion() {
+    	return new Fourier();
+    }
+    
+    /**
+     * Calculates order + 1 Fourier coefficients a_0, b_1, a_1, b_2, a_2, ... 
+     * 
+     * @see ExpansionKernel.coeffs()
+     */
+    @Override
+    public void coeffs(int[] positions, int from, int to, double scale,
+	    int order, double[] out, int outOffset) {
+        // Initialization
+        for (int n = 0; n <= order; n++) {
+            out[outOffset + n] = 0;
+        }
+        
+        // Zeroth order
+        int numberWords = to - from;
+        out[outOffset] = (double)numberWords / Math.sqrt(scale);
+        
+        // Higher orders (with the Vector API kernels the recurrence runs 
+        // over several words at once and is used for every order; it is 
+        // also used for documents too long for a table)
+        FourierTable table = FourierTable.forScale(scale);
+        if (highOrder || (automatic && order >= Fourier.HIGH_ORDER) 
+        	|| Kernels.VECTORIZED || scale > FourierTable.MAX_LENGTH) {
+            coeffsRecurrence(table, positions, from, to, scale, order, out, 
+        	    outOffset);
+        } else if (table != null) {
+            coeffs(table, positions, from, to, scale, order, out, outOffset);
+        } else {
+            coeffsDirect(positions, from, to, scale, order, out, outOffset);
+        }
+    }
+    
+    /**
+     * Calculates the coefficients of order 1 to order using a table of 
+     * the roots of unity
+     * 
+     * Since scale and the word positions are integers, all arguments of the 
+     * trigonometric functions are multiples of 2 pi / scale, so that no 
+     * trigonometric function has to be evaluated here.
+     * 
+     * @param table Table for the length scale
+     * @see coeffs(int[], int, int, double, int, double[], int)
+     */
+    private static void coeffs(FourierTable table, int[] positions, 
+	    int from, int to, double scale, int order, double[] out, 
+	    int outOffset) {
+        for (int n = 1; n <= order; n++) {
+            // nEff assumes values 1, 1, 2, 2, ...
+            int nEff = (n + 1) / 2;
+            double sumCoeff = 0;
+            if (n % 2 == 0) {
+        	// n even: cosine coefficients
+        	for (int i = from; i < to; i++) {
+        	    sumCoeff += table.sin(table.index(nEff, positions[i]));
+        	    sumCoeff -= table.sin(table.index(nEff, positions[i] - 1));
+        	}
+        	out[outOffset + n] = 1 / (nEff * Math.PI) * Math.sqrt(scale / 2) 
+        		* sumCoeff;
+            } else {
+        	// n odd: sine coefficients
+        	for (int i = from; i < to; i++) {
+        	    sumCoeff += table.cos(table.index(nEff, positions[i]));
+        	    sumCoeff -= table.cos(table.index(nEff, positions[i] - 1));
+        	}
+        	out[outOffset + n] = -1 / (nEff * Math.PI) * Math.sqrt(scale / 2) 
+        		* sumCoeff;
+            }
+        }
+    }
+    
+    /**
+     * Calculates the coefficients of order 1 to order in high-order mode
+     * 
+     * For every word position p the values sin(k x) and cos(k x), where 
+     * x = 2 pi p / scale, are obtained from sin(x) and cos(x) by the angle 
+     * addition theorems
+     * sin((k + 1) x) = sin(k x) cos(x) + cos(k x) sin(x),
+     * cos((k + 1) x) = cos(k x) cos(x) - sin(k x) sin(x).
+     * Every Fourier.RESEED_INTERVAL steps the values are calculated exactly.
+     * The sums over the words are done by Kernels.fourierSums().
+     * 
+     * @param table Table for the length scale (may be null)
+     * @see coeffs(int[], int, int, double, int, double[], int)
+     */
+    private static void coeffsRecurrence(FourierTable table, 
+	    int[] positions, int from, int to, double scale, int order, 
+	    double[] out, int outOffset) {
+        Kernels.fourierSums(table, positions, from, to, scale, order, out, 
+        	outOffset);
+        
+        for (int n = 1; n <= order; n++) {
+            int nEff = (n + 1) / 2;
+            double prefactor = 1 / (nEff * Math.PI) * Math.sqrt(scale / 2);
+            out[outOffset + n] *= n % 2 == 0 ? prefactor : -prefactor;
+        }
+    }
+    
+    /**
+     * Calculates the coefficients of order 1 to order by direct evaluation
+     * of the trigonometric functions
+     * 
+     * This is used if the length scale is not an integer.
+     * 
+     * @see coeffs(int[], int, int, double, int, double[], int)
+     */
+    private static void coeffsDirect(int[] positions, int from, int to,
+	    double scale, int order, double[] out, int outOffset) {
+        for (int n = 1; n <= order; n++) {
+            // nEff assumes values 1, 1, 2, 2, ...
+            int nEff = (n + 1) / 2;
+            if (n % 2 == 0) {
+        	// n even: cosine coefficients
+        	double a_coeff =  1 / (nEff * Math.PI) * Math.sqrt(scale / 2);
+        	double a_sumCoeff = 0;
+        	for (int i = from; i < to; i++) {
+        	    a_sumCoeff += Math.sin(2 * nEff * Math.PI * positions[i] 
+        		    / scale);
+        	    a_sumCoeff -= Math.sin(2 * nEff * Math.PI * (positions[i]-1) 
+        		    / scale);
+        	}
+        	out[outOffset + n] = a_coeff * a_sumCoeff;
+            } else {
+        	// n odd: sine coefficients
+        	double b_coeff = -1 / (nEff * Math.PI) * Math.sqrt(scale / 2);
+        	double b_sumCoeff = 0;
+        	for (int i = from; i < to; i++) {
+        	    b_sumCoeff += Math.cos(2 * nEff * Math.PI * positions[i] 
+        		    / scale);
+        	    b_sumCoeff -= Math.cos(2 * nEff * Math.PI * (positions[i]-1) 
+        		    / scale);
+        	}
+        	out[outOffset + n] = b_coeff * b_sumCoeff;
+            }
+        }
+    }
+    
+    /**
+     * Calculates order + 1 Fourier coefficients from a histogram of the word
+     * positions
+     * 
+     * The interval [0, scale] is divided into bins of equal width 
+     * w = scale / bins, and every word is counted in the bin containing its
+     * center (periodically continued). The words of bin b are then treated 
+     * as the constant density h_b / w on the bin, whose coefficients are 
+     * exact integrals over the bin. Since the bin edges are multiples of 
+     * 2 pi / bins, the edge values are taken from the table of length bins,
+     * and each edge is visited once per order:
+     * \sum_b h_b (S(b + 1) - S(b)) = \sum_e S(e) (h_{e-1} - h_e).
+     * The cost is proportional to words + bins * order, independently of the
+     * frequency of the word. The zeroth order is exact.
+     * 
+     * @param positions Array containing the word positions
+     * @param from First index of the distribution in positions (inclusive)
+     * @param to Last index of the distribution in positions (exclusive)
+     * @param scale Length-scale parameter (larger than 0)
+     * @param order Order of the expansion
+     * @param bins Number of bins
+     * @param histogram Array for the histogram (length at least bins)
+     * @param out Array for the results
+     * @param outOffset Index in out for c_0
+     */
+    public static void coeffsBinned(int[] positions, int from, int to,
+	    double scale, int order, int bins, double[] histogram, 
+	    double[] out, int outOffset) {
+        // Histogram (in units of the density 1 / w)
+        double width = scale / bins;
+        for (int b = 0; b < bins; b++) {
+            histogram[b] = 0;
+        }
+        for (int i = from; i < to; i++) {
+            double center = (positions[i] - 0.5) / scale;
+            center -= Math.floor(center);
+            int b = (int)(center * bins);
+            histogram[b < bins ? b : bins - 1] += 1 / width;
+        }
+        
+        out[outOffset] = (double)(to - from) / Math.sqrt(scale);
+        
+        FourierTable table = FourierTable.get(bins);
+        for (int n = 1; n <= order; n++) {
+            int nEff = (n + 1) / 2;
+            double sumCoeff = 0;
+            double previous = histogram[bins - 1];
+            for (int e = 0; e < bins; e++) {
+        	int index = table.index(nEff, e);
+        	double value = n % 2 == 0 ? table.sin(index) : table.cos(index);
+        	sumCoeff += value * (previous - histogram[e]);
+        	previous = histogram[e];
+            }
+            double prefactor = 1 / (nEff * Math.PI) * Math.sqrt(scale / 2);
+            out[outOffset + n] = (n % 2 == 0 ? prefactor : -prefactor) 
+        	    * sumCoeff;
+        }
+    }
+    
+    /**
+     * @return sin(2 pi n position / scale), from the table if possible
+     */
+    static double sin(FourierTable table, int n, int position, 
+	    double scale) {
+        if (table != null) {
+            return table.sin(table.index(n, position));
+        }
+        return Math.sin(2 * n * Math.PI * position / scale);
+    }
+    
+    /**
+     * @return cos(2 pi n position / scale), from the table if possible
+     */
+    static double cos(FourierTable table, int n, int position, 
+	    double scale) {
+        if (table != null) {
+            return table.cos(table.index(n, position));
+        }
+        return Math.cos(2 * n * Math.PI * position / scale);
+    }
+    
+    /**
+     * Calculates the Fourier expanded function
+     * 
+     * For every x the cosine and sine series are summed with Clenshaw's
+     * algorithm, based on cos(k t) = 2 cos(t) cos((k - 1) t) - cos((k - 2) t)
+     * (likewise for the sine), where t = 2 pi x / documentLength. Since the
+     * x values are equally spaced, cos(t) and sin(t) are taken from the 
+     * shared table for the number of intervals.
+     * 
+     * @see ExpansionKernel.expandedFunction()
+     */
+    @Override
+    public void expandedFunction(double[] coeffs, int coeffsOffset, 
+	    double scale, int documentLength, int order, double[] xValues, 
+	    double[] yValues) {
+        AbstractExpansion.fillXValues(documentLength, xValues);
+        FourierTable table = FourierTable.get(xValues.length - 1);
+        double constant = coeffs[coeffsOffset] / Math.sqrt((double)documentLength);
+        double normalization = Math.sqrt(2 / (double)documentLength);
+        int maxEff = (order + 1) / 2;
+        
+        for (int i = 0; i < xValues.length; i++) {
+            double cos1 = table.cos(table.index(1, i));
+            double sin1 = table.sin(table.index(1, i));
+            
+            // Clenshaw recurrences for the cosine (a) and sine (b) series
+            double a1 = 0, a2 = 0, b1 = 0, b2 = 0;
+            for (int nEff = maxEff; nEff >= 1; nEff--) {
+        	double a_coeff = 2 * nEff <= order 
+        		? coeffs[coeffsOffset + 2 * nEff] : 0;
+        	double b_coeff = coeffs[coeffsOffset + 2 * nEff - 1];
+        	double a0 = a_coeff + 2 * cos1 * a1 - a2;
+        	double b0 = b_coeff + 2 * cos1 * b1 - b2;
+        	a2 = a1;
+        	a1 = a0;
+        	b2 = b1;
+        	b1 = b0;
+            }
+            
+            yValues[i] = constant 
+        	    + normalization * (a1 * cos1 - a2 + b1 * sin1);
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package math;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * Table of the L-th roots of unity
+ *
+ * For an integer length L this class holds sin(2 pi k / L) and
+ * cos(2 pi k / L) for k = 0, 1, ..., L - 1. Since word positions and the
+ * document length are integers, every argument of the trigonometric
+ * functions in a Fourier expansion is a multiple of 2 pi / L, so that all
+ * values can be looked up in this table instead of being recalculated.
+ *
+ * Tables are immutable and shared: one table is created per distinct length
+ * and kept in a least-recently-used cache (see get()). A table costs
+ * 16 L bytes, so the cache is bounded by the total length of its tables
+ * (CACHE_ENTRIES) rather than by their number, and forScale() gives no table
+ * for lengths above MAX_LENGTH; the Fourier coefficients of such documents
+ * are calculated with the recurrence (see FourierKernel).
+ *
+ * @author Javier Fuentes (j.fuentes06@ufromail.cl)
+ * @version 1.0
+ */
+public final class FourierTable {
+
+    /**
+     * Largest length for which forScale() returns a table (2 MB per table)
+     */
+    public static final int MAX_LENGTH = 1 << 17;
+
+    /**
+     * Maximum total length of the tables kept in the cache (32 MB)
+     */
+    private static final long CACHE_ENTRIES = 1 << 21;
+
+    /**
+     * Cache of tables, keyed by length (access ordered)
+     */
+    private static final LinkedHashMap<Integer, FourierTable> cache =
+	    new LinkedHashMap<Integer, FourierTable>(16, 0.75f, true);
+
+    /**
+     * Total length of the tables in the cache
+     */
+    private static long cachedEntries = 0;
+
+    /**
+     * Length L of the table
+     */
+    private final int length;
+
+    /**
+     * sin(2 pi k / L), k = 0, ..., L - 1
+     */
+    private final double[] sin;
+
+    /**
+     * cos(2 pi k / L), k = 0, ..., L - 1
+     */
+    private final double[] cos;
+
+    /**
+     * Private constructor, tables are obtained through get()
+     *
+     * @param length Length L of the table (larger than 0)
+     */
+    private FourierTable(int length) {
+	this.length = length;
+	sin = new double[length];
+	cos = new double[length];
+	for (int k = 0; k < length; k++) {
+	    double angle = 2 * Math.PI * k / length;
+	    sin[k] = Math.sin(angle);
+	    cos[k] = Math.cos(angle);
+	}
+    }
+
+    /**
+     * Returns the (shared) table for the given length
+     *
+     * The least recently used tables are dropped from the cache until their
+     * total length is at most CACHE_ENTRIES; a table longer than that is not
+     * cached at all.
+     *
+     * @param length Length L of the table (larger than 0)
+     * @return The table of the L-th roots of unity
+     */
+    public static FourierTable get(int length) {
+	if (length <= 0) {
+	    throw new IllegalArgumentException("Length has to be positive.");
+	}
+	synchronized (cache) {
+	    FourierTable table = cache.get(length);
+	    if (table != null) {
+		return table;
+	    }
+	}
+	// Calculated outside the lock, another thread may do the same
+	FourierTable table = new FourierTable(length);
+	if (length > CACHE_ENTRIES) {
+	    return table;
+	}
+	synchronized (cache) {
+	    FourierTable cached = cache.get(length);
+	    if (cached != null) {
+		return cached;
+	    }
+	    cache.put(length, table);
+	    cachedEntries += length;
+	    Iterator<FourierTable> eldest = cache.values().iterator();
+	    while (cachedEntries > CACHE_ENTRIES) {
+		cachedEntries -= eldest.next().length;
+		eldest.remove();
+	    }
+	    return table;
+	}
+    }
+
+    /**
+     * Returns the table for a length-scale parameter, if the scale is an
+     * integer from 1 to MAX_LENGTH
+     *
+     * @param scale Length-scale parameter
+     * @return The table or null if scale is not an integer from 1 to
+     *  MAX_LENGTH
+     */
+    public static FourierTable forScale(double scale) {
+	if (scale >= 1 && scale <= MAX_LENGTH && scale == Math.rint(scale)) {
+	    return get((int)scale);
+	}
+	return null;
+    }
+
+    public int getLength() {
+	return length;
+    }
+
+    /**
+     * Reduces n * position modulo L
+     *
+     * @param n Frequency
+     * @param position Position (may be negative)
+     * @return Index into the table
+     */
+    public int index(int n, int position) {
+	int index = (int)(((long)n * position) % length);
+	return index < 0 ? index + length : index;
+    }
+
+    /**
+     * @param index Index into the table (see index())
+     * @return sin(2 pi index / L)
+     */
+    public double sin(int index) {
+	return sin[index];
+    }
+
+    /**
+     * @param index Index into the table (see index())
+     * @return cos(2 pi index / L)
+     */
+    public double cos(int index) {
+	return cos[index];
+    }
+}
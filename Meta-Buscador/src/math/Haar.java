@@ -0,0 +1,39 @@
+package math;
+
+/**
+ * Haar wavelet expansion
+ *
+ * This class contains methods to calculate an expansion in terms of Haar
+ * wavelets for a function that is defined in the interval [0, L].
+ *
+ * The expansion functions are orthonormal with respect to the scalar product
+ * of L_2([0, L]):
+ * phi_0(x) = 1 / \sqrt(L),
+ * phi_n(x) = 2^(j/2) / \sqrt(L) psi(2^j x / L - k), n = 2^j + k,
+ * 0 <= k < 2^j,
+ * where psi is +1 on [0, 1/2[, -1 on [1/2, 1[ and 0 elsewhere. Thus level j
+ * consists of the coefficients 2^j, ..., 2^(j+1) - 1, and an order of the
+ * form 2^J - 1 contains the complete levels 0, ..., J - 1.
+ *
+ * Here the length-scale parameter is the document length L. Contrary to the
+ * Fourier expansion the basis functions are not periodic, so that the
+ * beginning and the end of the document do not influence each other and no
+ * padding is needed. Every basis function is localized, i. e. the
+ * coefficients of the fine levels describe where in the document the words
+ * are.
+ *
+ * The calculations are done by HaarKernel.
+ *
+ * @author Javier Fuentes (j.fuentes06@ufromail.cl)
+ * @version 1.0
+ */
+public class Haar extends AbstractExpansion {
+
+    /**
+     * Protected constructor
+     */
+    protected Haar() {
+	super(HaarKernel.INSTANCE);
+	maxOrder = 31;
+    }
+}
@@ -0,0 +1,145 @@
+package math;
+
+/**
+ * Kernel of the Haar wavelet expansion
+ *
+ * This class contains the actual calculations of the Haar expansion (see
+ * Haar for the definitions). It keeps no mutable state and can be used
+ * from any number of threads.
+ *
+ * @author Javier Fuentes (j.fuentes06@ufromail.cl)
+ * @version 1.0
+ */
+public class HaarKernel implements ExpansionKernel {
+
+    /**
+     * Instance shared by all Haar expansions
+     */
+    static final HaarKernel INSTANCE = new HaarKernel();
+
+    @Override
+    public String getName() {
+    	return "Haar";
+    }
+
+    /**
+     * For the Haar expansion the length scale is the document length
+     */
+    @Override
+    public boolean hasVariableScale() {
+    	return false;
+    }
+
+    @Override
+    public int getDefaultOrder() {
+    	return 31;
+    }
+
+    @Override
+    public AbstractExpansion newExpansion() {
+    	return new Haar();
+    }
+
+    /**
+     * Calculates coefficients c_0, c_1, ..., c_order of an expansion in
+     * terms of Haar wavelets
+     *
+     * Every word at position p is the interval [p - 1, p] (clipped to
+     * [0, scale]). On every level its coefficient is the length of the
+     * overlap with the positive half of a wavelet minus the overlap with the
+     * negative half. A word of length 1 meets at most two wavelets of a level
+     * as long as the wavelets are longer than 1, so the cost is proportional
+     * to words * levels, i. e. words * log(order), and no transcendental
+     * function is evaluated. The normalization 2^(j/2) / \sqrt(scale) is
+     * applied once per coefficient at the end.
+     *
+     * @see ExpansionKernel.coeffs()
+     */
+    @Override
+    public void coeffs(int[] positions, int from, int to, double scale,
+	    int order, double[] out, int outOffset) {
+        // Initialization
+        for (int n = 0; n <= order; n++) {
+            out[outOffset + n] = 0;
+        }
+
+        for (int i = from; i < to; i++) {
+            double lower = Math.max(positions[i] - 1, 0);
+            double upper = Math.min(positions[i], scale);
+            if (upper <= lower) {
+        	continue;
+            }
+
+            // Zeroth order
+            out[outOffset] += upper - lower;
+
+            // Level j has count = 2^j wavelets of width scale / count
+            for (int count = 1; count <= order; count *= 2) {
+        	double width = scale / count;
+        	int kLast = Math.min(Math.min((int)(upper / width), count - 1),
+        		order - count);
+        	for (int k = (int)(lower / width); k <= kLast; k++) {
+        	    double left = k * width;
+        	    double middle = left + width / 2;
+        	    double right = left + width;
+        	    out[outOffset + count + k] += overlap(lower, upper, left, middle)
+        		    - overlap(lower, upper, middle, right);
+        	}
+            }
+        }
+
+        // Normalization
+        out[outOffset] /= Math.sqrt(scale);
+        for (int count = 1; count <= order; count *= 2) {
+            double normalization = Math.sqrt(count / scale);
+            int last = Math.min(2 * count - 1, order);
+            for (int n = count; n <= last; n++) {
+        	out[outOffset + n] *= normalization;
+            }
+        }
+    }
+
+    /**
+     * @return Length of the intersection of [a, b] and [c, d]
+     */
+    private static double overlap(double a, double b, double c, double d) {
+        double length = Math.min(b, d) - Math.max(a, c);
+        return length > 0 ? length : 0;
+    }
+
+    /**
+     * Calculates the Haar expanded function
+     *
+     * At every x only one wavelet per level is non-zero, so the sum costs
+     * one term per level.
+     *
+     * @see ExpansionKernel.expandedFunction()
+     */
+    @Override
+    public void expandedFunction(double[] coeffs, int coeffsOffset,
+	    double scale, int documentLength, int order, double[] xValues,
+	    double[] yValues) {
+        AbstractExpansion.fillXValues(documentLength, xValues);
+        double constant = coeffs[coeffsOffset] / Math.sqrt(scale);
+
+        for (int i = 0; i < xValues.length; i++) {
+            double x = xValues[i];
+            double y = constant;
+            if (x >= 0 && x <= scale) {
+        	for (int count = 1; count <= order; count *= 2) {
+        	    double width = scale / count;
+        	    int k = Math.min((int)(x / width), count - 1);
+        	    if (count + k > order) {
+        		continue;
+        	    }
+        	    double value = coeffs[coeffsOffset + count + k]
+        		    * Math.sqrt(count / scale);
+        	    y += x - k * width < width / 2 ? value : -value;
+        	}
+            } else {
+        	y = 0;
+            }
+            yValues[i] = y;
+        }
+    }
+}
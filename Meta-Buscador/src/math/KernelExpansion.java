@@ -0,0 +1,23 @@
+package math;
+
+/**
+ * Expansion based on an arbitrary kernel
+ *
+ * This class is used by AbstractExpansion.createExpansion() for kernels
+ * that have no expansion class of their own.
+ *
+ * @author Javier Fuentes (j.fuentes06@ufromail.cl)
+ * @version 1.0
+ */
+public class KernelExpansion extends AbstractExpansion {
+
+    /**
+     * Constructor
+     *
+     * @param kernel The kernel doing the calculations
+     */
+    protected KernelExpansion(ExpansionKernel kernel) {
+	super(kernel);
+	maxOrder = kernel.getDefaultOrder();
+    }
+}
@@ -0,0 +1,195 @@
+package math;
+
+/**
+ * Numerical kernels on double arrays
+ *
+ * The scalar products of the similarity computations and the inner loops of
+ * the Fourier (angle-addition recurrence) and Legendre (Bonnet's recurrence)
+ * coefficients are delegated to an implementation chosen once at startup:
+ * * ScalarKernels: plain loops, available on every Java 8 virtual machine.
+ * * VectorKernels: the same calculations with the Vector API
+ *   (jdk.incubator.vector), i. e. with one instruction for several words or
+ *   coefficients (AVX2, AVX-512). The class is in the source folder vector,
+ *   which needs Java 17 and is compiled separately (see VectorKernels). It
+ *   is used if it is found on the class path and the module is present
+ *   (--add-modules jdk.incubator.vector).
+ * The system property math.kernels=scalar forces the scalar implementation.
+ *
+ * The implementations sum in different orders, so that their results may
+ * differ in the last bits (see KernelsTest for the tolerances).
+ *
+ * @author Javier Fuentes (j.fuentes06@ufromail.cl)
+ * @version 1.0
+ */
+public final class Kernels {
+
+    /**
+     * Calculations done by a kernel implementation
+     *
+     * Implementations keep no mutable state and can be used from any number
+     * of threads.
+     */
+    public interface Implementation {
+
+	/**
+	 * @return Name of the implementation, e. g. "scalar"
+	 */
+	String getName();
+
+	/**
+	 * @see Kernels.dot()
+	 */
+	double dot(double[] a, int aOffset, double[] b, int bOffset,
+		int length);
+
+	/**
+	 * @see Kernels.sumOfSquares()
+	 */
+	double sumOfSquares(double[] a, int offset, int length);
+
+	/**
+	 * @see Kernels.dotOverSumOfSquares()
+	 */
+	double dotOverSumOfSquares(double[] a, int aOffset, double[] b,
+		int bOffset, int length);
+
+	/**
+	 * @see Kernels.fourierSums()
+	 */
+	void fourierSums(FourierTable table, int[] positions, int from,
+		int to, double scale, int order, double[] out, int outOffset);
+
+	/**
+	 * @see Kernels.legendreSums()
+	 */
+	void legendreSums(int[] positions, int from, int to, double scale,
+		int order, double[] out, int outOffset);
+    }
+
+    /**
+     * Implementation used by all kernels
+     */
+    private static final Implementation IMPLEMENTATION = select();
+
+    /**
+     * Whether or not the Vector API implementation is used
+     */
+    public static final boolean VECTORIZED =
+	    !(IMPLEMENTATION instanceof ScalarKernels);
+
+    /**
+     * Private constructor, this class only has static methods
+     */
+    private Kernels() {}
+
+    /**
+     * Chooses the implementation: VectorKernels if it can be loaded,
+     * ScalarKernels otherwise
+     */
+    private static Implementation select() {
+	if (!"scalar".equals(System.getProperty("math.kernels"))) {
+	    try {
+		return (Implementation)Class.forName("math.VectorKernels")
+			.getDeclaredConstructor().newInstance();
+	    } catch (ReflectiveOperationException e) {
+		// Not on the class path, or no vector registers worth using
+		// (the UnsupportedOperationException of the constructor)
+	    } catch (LinkageError e) {
+		// Module jdk.incubator.vector not present
+	    }
+	}
+	return new ScalarKernels();
+    }
+
+    /**
+     * @return The implementation used by all kernels
+     */
+    public static Implementation getImplementation() {
+	return IMPLEMENTATION;
+    }
+
+    /**
+     * Scalar product of a[aOffset], ..., a[aOffset + length - 1] and
+     * b[bOffset], ..., b[bOffset + length - 1]
+     *
+     * @return The scalar product
+     */
+    public static double dot(double[] a, int aOffset, double[] b, int bOffset,
+	    int length) {
+	return IMPLEMENTATION.dot(a, aOffset, b, bOffset, length);
+    }
+
+    /**
+     * Sum of the squares of a[offset], ..., a[offset + length - 1]
+     *
+     * @return The squared norm
+     */
+    public static double sumOfSquares(double[] a, int offset, int length) {
+	return IMPLEMENTATION.sumOfSquares(a, offset, length);
+    }
+
+    /**
+     * Scalar product of a and b divided by the squared norm of b, both in
+     * one pass over the arrays
+     *
+     * @return (a, b) / (b, b) (NaN or infinite if b is 0)
+     * @see dot()
+     */
+    public static double dotOverSumOfSquares(double[] a, int aOffset,
+	    double[] b, int bOffset, int length) {
+	return IMPLEMENTATION.dotOverSumOfSquares(a, aOffset, b, bOffset,
+		length);
+    }
+
+    /**
+     * Adds the sine and cosine sums of the Fourier coefficients of order 1
+     * to order of a word distribution
+     *
+     * For every word at position p and k = 1, ..., (order + 1) / 2,
+     * cos(k x_p) - cos(k x_{p-1}) is added to out[outOffset + 2 k - 1] and
+     * sin(k x_p) - sin(k x_{p-1}) to out[outOffset + 2 k] (if 2 k <= order),
+     * where x_p = 2 pi p / scale. The values are obtained with the
+     * angle-addition recurrence from sin(x_p) and cos(x_p), which are
+     * calculated exactly again every Fourier.RESEED_INTERVAL steps (see
+     * FourierKernel).
+     *
+     * @param table Table for the length scale (may be null)
+     * @param positions Array containing the word positions
+     * @param from First index of the distribution in positions (inclusive)
+     * @param to Last index of the distribution in positions (exclusive)
+     * @param scale Length-scale parameter
+     * @param order Order of the expansion
+     * @param out Array for the sums
+     * @param outOffset Index in out for order 0 (which is not changed)
+     */
+    public static void fourierSums(FourierTable table, int[] positions,
+	    int from, int to, double scale, int order, double[] out,
+	    int outOffset) {
+	IMPLEMENTATION.fourierSums(table, positions, from, to, scale, order,
+		out, outOffset);
+    }
+
+    /**
+     * Adds the integrals of the Legendre polynomials P_0, ..., P_order over
+     * the words of a distribution
+     *
+     * For every word at position p the integral of P_n(u) over
+     * [u_{p-1}, u_p], u_p = 2 p / scale - 1, is added to out[outOffset + n],
+     * using the antiderivatives u (n = 0) and
+     * (P_{n+1}(u) - P_{n-1}(u)) / (2 n + 1) from Bonnet's recurrence (see
+     * LegendreKernel).
+     *
+     * @param positions Array containing the word positions
+     * @param from First index of the distribution in positions (inclusive)
+     * @param to Last index of the distribution in positions (exclusive)
+     * @param scale Length-scale parameter
+     * @param order Order of the expansion
+     * @param out Array for the integrals
+     * @param outOffset Index in out for order 0
+     */
+    public static void legendreSums(int[] positions, int from, int to,
+	    double scale, int order, double[] out, int outOffset) {
+	IMPLEMENTATION.legendreSums(positions, from, to, scale, order, out,
+		outOffset);
+    }
+}
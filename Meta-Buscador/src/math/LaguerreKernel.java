@@ -0,0 +1,128 @@
+package math;
+
+/**
+ * Kernel of the Laguerre expansion
+ * 
+ * This class contains the actual calculations of the Laguerre expansion (see 
+ * Laguerre for the definitions). It keeps no mutable state and can be used
+ * from any number of threads.
+ * 
+ * @author Javier Fuentes (j.fuentes06@ufromail.cl)
+ * @version 1.0
+ */
+public class LaguerreKernel implements ExpansionKernel {
+    
+    /**
+     * Instance shared by all Laguerre expansions
+     */
+    static final LaguerreKernel INSTANCE = new LaguerreKernel();
+    
+    @Override
+    public String getName() {
+    	return "Laguerre";
+    }
+    
+    /**
+     * The Laguerre expansion has a variable length scale
+     */
+    @Override
+    public boolean hasVariableScale() {
+    	return true;
+    }
+    
+    @Override
+    public int getDefaultOrder() {
+    	return 6;
+    }
+    
+    @Override
+    public AbstractExpansion newExpansion() {
+    	return new Laguerre();
+    }
+    
+    /**
+     * Calculates coefficients c_0, c_1, ..., c_order of an expansion in 
+     * terms of Laguerre polynomials
+     * 
+     * The coefficient of one word at position p is
+     * 2 \sqrt(scale) (exp(-(p - 1) / (2 scale)) T_n((p - 1) / scale) 
+     *     - exp(-p / (2 scale)) T_n(p / scale)),
+     * where T_n = \sum_{d=0}^n 2^d L_n^{(d)} is the sum of the derivatives of
+     * L_n. Since L_n' = L_{n-1}' - L_{n-1}, these sums obey the recurrence
+     * T_0 = 1, T_n = L_n - L_{n-1} - T_{n-1}, so that all orders of one word 
+     * are obtained in one run together with the Laguerre polynomials. Only 
+     * one exponential has to be evaluated per word.
+     * 
+     * @see ExpansionKernel.coeffs()
+     */
+    @Override
+    public void coeffs(int[] positions, int from, int to, double scale,
+	    int order, double[] out, int outOffset) {
+        // Initialization
+        for (int n = 0; n <= order; n++) {
+            out[outOffset + n] = 0;
+        }
+        
+        // exp(1 / (2 scale)) only depends on the scale
+        double expHalfStep = Math.exp(1 / (2.0 * scale));
+        
+        for (int i = from; i < to; i++) {
+            double expUpper = Math.exp(- positions[i] / (2.0 * scale));
+            // Upper (p) and lower (p - 1) end of the word
+            for (int end = 0; end <= 1; end++) {
+        	double x = (positions[i] - end) / scale;
+        	double weight = end == 0 ? -expUpper : expUpper * expHalfStep;
+        	
+        	double lPrevious = 0;
+        	double lCurrent = 1;
+        	double tCurrent = 1;
+        	out[outOffset] += weight * tCurrent;
+        	for (int n = 1; n <= order; n++) {
+        	    double lNext = ((2 * n - 1 - x) * lCurrent 
+        		    - (n - 1) * lPrevious) / n;
+        	    tCurrent = lNext - lCurrent - tCurrent;
+        	    lPrevious = lCurrent;
+        	    lCurrent = lNext;
+        	    out[outOffset + n] += weight * tCurrent;
+        	}
+            }
+        }
+        
+        for (int n = 0; n <= order; n++) {
+            out[outOffset + n] *= 2.0 * Math.sqrt(scale);
+        }
+    }
+    
+    /**
+     * Calculates the Laguerre expanded function
+     *
+     * This method calculates the x and y values for the Laguerre expansion,
+     * y = \sum c_n phi_n(x). The sum is evaluated with Clenshaw's algorithm
+     * based on the recurrence of the Laguerre polynomials.
+     * 
+     * @see ExpansionKernel.expandedFunction()
+     */
+    @Override
+    public void expandedFunction(double[] coeffs, int coeffsOffset, 
+	    double scale, int documentLength, int order, double[] xValues, 
+	    double[] yValues) {
+        AbstractExpansion.fillXValues(documentLength, xValues);
+
+        for (int i = 0; i < xValues.length; i++) {
+            double x = xValues[i] / scale;
+            
+            // Clenshaw recurrence
+            double b1 = 0, b2 = 0;
+            for (int n = order; n >= 1; n--) {
+        	double b0 = coeffs[coeffsOffset + n] 
+        		+ (2 * n + 1 - x) / (n + 1) * b1 
+        		- (double)(n + 1) / (n + 2) * b2;
+        	b2 = b1;
+        	b1 = b0;
+            }
+            
+            yValues[i] = (coeffs[coeffsOffset] + (1 - x) * b1 - b2 / 2) 
+        	    * Math.exp(- x / 2.0) / Math.sqrt(scale);
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package math;
+
+/**
+ * Kernel of the Legendre expansion
+ * 
+ * This class contains the actual calculations of the Legendre expansion (see 
+ * Legendre for the definitions). It keeps no mutable state and can be used
+ * from any number of threads.
+ * 
+ * @author Javier Fuentes (j.fuentes06@ufromail.cl)
+ * @version 1.0
+ */
+public class LegendreKernel implements ExpansionKernel {
+    
+    /**
+     * Instance shared by all Legendre expansions
+     */
+    static final LegendreKernel INSTANCE = new LegendreKernel();
+    
+    @Override
+    public String getName() {
+    	return "Legendre";
+    }
+    
+    /**
+     * For the Legendre expansion the length scale is the document length
+     */
+    @Override
+    public boolean hasVariableScale() {
+    	return false;
+    }
+    
+    @Override
+    public int getDefaultOrder() {
+    	return 6;
+    }
+    
+    @Override
+    public AbstractExpansion newExpansion() {
+    	return new Legendre();
+    }
+    
+    /**
+     * Calculates coefficients c_0, c_1, ..., c_order of an expansion in 
+     * terms of shifted Legendre polynomials
+     * 
+     * Every word at position p contributes the integral of P*_n over
+     * [(p - 1) / L, p / L]. With u = 2 x - 1 and the antiderivative
+     * \int P_n(u) du = (P_{n+1}(u) - P_{n-1}(u)) / (2 n + 1) (n > 0)
+     * all orders follow from one run of Bonnet's recurrence for each end of 
+     * the word, i. e. the cost is proportional to words * order. The sums 
+     * over the words are done by Kernels.legendreSums().
+     * 
+     * @see ExpansionKernel.coeffs()
+     */
+    @Override
+    public void coeffs(int[] positions, int from, int to, double scale,
+	    int order, double[] out, int outOffset) {
+        // Initialization
+        for (int n = 0; n <= order; n++) {
+            out[outOffset + n] = 0;
+        }
+        
+        Kernels.legendreSums(positions, from, to, scale, order, out, 
+        	outOffset);
+        
+        // dx = du / 2 and normalization
+        for (int n = 0; n <= order; n++) {
+            out[outOffset + n] *= Math.sqrt((double)(2 * n + 1) * scale) / 2;
+        }
+    }
+    
+    /**
+     * Calculates the Legendre expanded function
+     *
+     * This method calculates the x and y values for the Legendre expansion,
+     * y = \sum c_n phi_n(x). The sum is evaluated with Clenshaw's algorithm
+     * based on Bonnet's recurrence.
+     * 
+     * @see ExpansionKernel.expandedFunction()
+     */
+    @Override
+    public void expandedFunction(double[] coeffs, int coeffsOffset, 
+	    double scale, int documentLength, int order, double[] xValues, 
+	    double[] yValues) {
+        AbstractExpansion.fillXValues(documentLength, xValues);
+        
+        for (int i = 0; i < xValues.length; i++) {
+            double u = 2 * xValues[i] / scale - 1;
+            
+            // Clenshaw recurrence
+            double b1 = 0, b2 = 0;
+            for (int n = order; n >= 1; n--) {
+        	double c = coeffs[coeffsOffset + n] 
+        		* Math.sqrt((double)(2 * n + 1) / scale);
+        	double b0 = c + (2 * n + 1) * u / (n + 1) * b1 
+        		- (double)(n + 1) / (n + 2) * b2;
+        	b2 = b1;
+        	b1 = b0;
+            }
+            
+            yValues[i] = coeffs[coeffsOffset] / Math.sqrt(scale) + u * b1 
+        	    - b2 / 2;
+        }
+    }
+}
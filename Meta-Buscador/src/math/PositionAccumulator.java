@@ -0,0 +1,138 @@
+package math;
+
+import java.util.Arrays;
+
+/**
+ * Incremental accumulator of word positions for several word distributions
+ *
+ * Positions can be added one by one (in O(1)) while a document is read,
+ * e. g. during tokenization, before the document length is known. Since the
+ * length scale and a possible shift of the positions (padding) are only
+ * known at the end, they are applied in finish(), which arranges the
+ * positions in the layout of AbstractExpansion.calculateCoeffs(int[], int[],
+ * double[]) and calculates all coefficients in one pass.
+ *
+ * The internal arrays are reused after clear(), so that an accumulator can
+ * serve many documents without further allocations (except for the offsets,
+ * whose length is the number of distributions + 1).
+ *
+ * @author Javier Fuentes (j.fuentes06@ufromail.cl)
+ * @version 1.0
+ */
+public class PositionAccumulator {
+
+    /**
+     * Distribution and position of every added word, in the order of add()
+     */
+    private int[] distributions = new int[64];
+    private int[] positions = new int[64];
+    private int size = 0;
+
+    /**
+     * Number of distributions (largest distribution + 1)
+     */
+    private int numberDistributions = 0;
+
+    /**
+     * Positions sorted by distribution and the corresponding offsets (see
+     * finish())
+     */
+    private int[] sortedPositions = new int[64];
+    private int[] offsets = new int[1];
+
+    /**
+     * Adds a word position
+     *
+     * @param distribution Number of the distribution (e. g. of the term),
+     *  starting at 0
+     * @param position Word position
+     */
+    public void add(int distribution, int position) {
+	if (size == positions.length) {
+	    distributions = Arrays.copyOf(distributions, 2 * size);
+	    positions = Arrays.copyOf(positions, 2 * size);
+	}
+	distributions[size] = distribution;
+	positions[size] = position;
+	size++;
+	if (distribution >= numberDistributions) {
+	    numberDistributions = distribution + 1;
+	}
+    }
+
+    /**
+     * Removes all positions, keeping the allocated memory
+     */
+    public void clear() {
+	size = 0;
+	numberDistributions = 0;
+    }
+
+    /**
+     * @return Total number of added positions
+     */
+    public int size() {
+	return size;
+    }
+
+    public int getNumberDistributions() {
+	return numberDistributions;
+    }
+
+    /**
+     * Returns the number of positions of a distribution
+     *
+     * This is only valid after finish().
+     *
+     * @param distribution Number of the distribution
+     * @return Number of positions
+     */
+    public int getCount(int distribution) {
+	return offsets[distribution + 1] - offsets[distribution];
+    }
+
+    /**
+     * Calculates the expansion coefficients of all distributions
+     *
+     * The positions are grouped by distribution (keeping their order) and
+     * shifted by shift. Then the coefficients are calculated with the given
+     * expansion and length scale, see
+     * AbstractExpansion.calculateCoeffs(int[], int[], double[]).
+     *
+     * @param expansion The expansion (its scale is set to scale)
+     * @param scale Length-scale parameter
+     * @param shift Value added to every position (e. g. padding at the
+     *  beginning of the document)
+     * @param matrix Array for the results, may be null or too short
+     * @return The coefficient matrix, one row per distribution
+     */
+    public double[] finish(AbstractExpansion expansion, double scale,
+	    int shift, double[] matrix) {
+	if (offsets.length != numberDistributions + 1) {
+	    offsets = new int[numberDistributions + 1];
+	}
+	if (sortedPositions.length < size) {
+	    sortedPositions = new int[positions.length];
+	}
+
+	// Counting sort by distribution
+	Arrays.fill(offsets, 0, numberDistributions + 1, 0);
+	for (int i = 0; i < size; i++) {
+	    offsets[distributions[i] + 1]++;
+	}
+	for (int t = 0; t < numberDistributions; t++) {
+	    offsets[t + 1] += offsets[t];
+	}
+	for (int i = 0; i < size; i++) {
+	    // offsets[t] is used as insertion point and restored below
+	    sortedPositions[offsets[distributions[i]]++] = positions[i] + shift;
+	}
+	for (int t = numberDistributions; t > 0; t--) {
+	    offsets[t] = offsets[t - 1];
+	}
+	offsets[0] = 0;
+
+	expansion.setScale(scale);
+	return expansion.calculateCoeffs(sortedPositions, offsets, matrix);
+    }
+}
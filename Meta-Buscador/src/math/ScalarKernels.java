@@ -0,0 +1,129 @@
+package math;
+
+/**
+ * Scalar implementation of the kernels (see Kernels)
+ *
+ * Every sum is accumulated in one variable, element by element. The static
+ * methods are also used by VectorKernels for the elements that do not fill
+ * a vector.
+ *
+ * @author Javier Fuentes (j.fuentes06@ufromail.cl)
+ * @version 1.0
+ */
+final class ScalarKernels implements Kernels.Implementation {
+
+    @Override
+    public String getName() {
+	return "scalar";
+    }
+
+    @Override
+    public double dot(double[] a, int aOffset, double[] b, int bOffset,
+	    int length) {
+	double sum = 0;
+	for (int i = 0; i < length; i++) {
+	    sum += a[aOffset + i] * b[bOffset + i];
+	}
+	return sum;
+    }
+
+    @Override
+    public double sumOfSquares(double[] a, int offset, int length) {
+	double sum = 0;
+	for (int i = 0; i < length; i++) {
+	    sum += a[offset + i] * a[offset + i];
+	}
+	return sum;
+    }
+
+    @Override
+    public double dotOverSumOfSquares(double[] a, int aOffset, double[] b,
+	    int bOffset, int length) {
+	double dot = 0;
+	double squares = 0;
+	for (int i = 0; i < length; i++) {
+	    double bi = b[bOffset + i];
+	    dot += a[aOffset + i] * bi;
+	    squares += bi * bi;
+	}
+	return dot / squares;
+    }
+
+    @Override
+    public void fourierSums(FourierTable table, int[] positions, int from,
+	    int to, double scale, int order, double[] out, int outOffset) {
+	fourierSumsScalar(table, positions, from, to, scale, order, out,
+		outOffset);
+    }
+
+    @Override
+    public void legendreSums(int[] positions, int from, int to,
+	    double scale, int order, double[] out, int outOffset) {
+	legendreSumsScalar(positions, from, to, scale, order, out, outOffset);
+    }
+
+    /**
+     * @see Kernels.fourierSums()
+     */
+    static void fourierSumsScalar(FourierTable table, int[] positions,
+	    int from, int to, double scale, int order, double[] out,
+	    int outOffset) {
+	int maxEff = (order + 1) / 2;
+
+	for (int i = from; i < to; i++) {
+	    // Upper (p) and lower (p - 1) end of the word
+	    for (int end = 0; end <= 1; end++) {
+		int position = positions[i] - end;
+		// +1 for the upper end, -1 for the lower end
+		double sign = 1 - 2 * end;
+		double sin1 = FourierKernel.sin(table, 1, position, scale);
+		double cos1 = FourierKernel.cos(table, 1, position, scale);
+		double sinN = sin1;
+		double cosN = cos1;
+		for (int nEff = 1; nEff <= maxEff; nEff++) {
+		    if (nEff % Fourier.RESEED_INTERVAL == 0) {
+			sinN = FourierKernel.sin(table, nEff, position, scale);
+			cosN = FourierKernel.cos(table, nEff, position, scale);
+		    }
+		    // Sine coefficient (n odd) and cosine coefficient (n even)
+		    out[outOffset + 2 * nEff - 1] += sign * cosN;
+		    if (2 * nEff <= order) {
+			out[outOffset + 2 * nEff] += sign * sinN;
+		    }
+		    double sinNext = sinN * cos1 + cosN * sin1;
+		    cosN = cosN * cos1 - sinN * sin1;
+		    sinN = sinNext;
+		}
+	    }
+	}
+    }
+
+    /**
+     * @see Kernels.legendreSums()
+     */
+    static void legendreSumsScalar(int[] positions, int from, int to,
+	    double scale, int order, double[] out, int outOffset) {
+	for (int j = from; j < to; j++) {
+	    // Upper (p) and lower (p - 1) end of the word
+	    for (int end = 0; end <= 1; end++) {
+		double u = 2 * (positions[j] - end) / scale - 1;
+		// +1 for the upper end, -1 for the lower end
+		double sign = 1 - 2 * end;
+
+		// Zeroth order: antiderivative u
+		out[outOffset] += sign * u;
+
+		double previous = 1;
+		double current = u;
+		for (int n = 1; n <= order; n++) {
+		    // current = P_n(u), next = P_{n+1}(u)
+		    double next = ((2 * n + 1) * u * current - n * previous)
+			    / (n + 1);
+		    out[outOffset + n] += sign * (next - previous) / (2 * n + 1);
+		    previous = current;
+		    current = next;
+		}
+	    }
+	}
+    }
+}
@@ -0,0 +1,615 @@
+package math;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Compact storage of expansion coefficients c_0, ..., c_{dimension-1}
+ *
+ * A vector is kept in its encoded form only, and the scalar products work
+ * directly on it, i. e. nothing is decoded into a double array. The encoded
+ * form is self-describing and can be written to and read from any
+ * ByteBuffer, including memory-mapped files (see wrap()):
+ * byte 0: format, bytes 1-2: dimension (unsigned), followed by
+ * * FLOAT32: dimension floats (4 bytes each)
+ * * FLOAT16: dimension IEEE half-precision floats (2 bytes each)
+ * * INT8: a float scale s and dimension bytes q_n, c_n = s q_n, where
+ *   s = max |c_n| / 127
+ * * SPARSE: the number k of entries (2 bytes) and k pairs of index (2 bytes)
+ *   and float value (4 bytes); the entries are the k coefficients of largest
+ *   magnitude, all others are 0.
+ * All numbers are big-endian. For the order 6 used by search.PayloadFilter
+ * (7 coefficients, 56 bytes as doubles) the encoded sizes are 31, 17, 14 and
+ * 5 + 6 k bytes, for order 30 they are 127, 65, 38 and 5 + 6 k bytes.
+ *
+ * Error bounds for the similarity of search.PayloadFilter,
+ * s = (a, b) / (|a|^2 |b|^2), if b is encoded (relative to the largest
+ * possible magnitude 1 / (|a| |b|) of s, since s may be close to 0):
+ * * FLOAT32: relative error of every coefficient below 2^-24, hence
+ *   |delta s| |a| |b| < 3 * 2^-24 = 1.8e-7.
+ * * FLOAT16: relative error of every coefficient below 2^-11 (absolute
+ *   error below 3e-8 for magnitudes below 6.1e-5), hence
+ *   |delta s| |a| |b| < 3 * 2^-11 = 1.5e-3.
+ * * INT8: absolute error of every coefficient below max |b_n| / 254, hence
+ *   |delta s| |a| |b| < 3 \sqrt(dimension) / 254; small coefficients lose
+ *   their relative accuracy.
+ * * SPARSE: the dropped coefficients r satisfy |delta (a, b)| <= |r| |a|
+ *   (Cauchy-Schwarz) and |delta |b|^2| = |r|^2, so k should capture most of
+ *   the energy (see AbstractExpansion.selectOrder()).
+ * For Fourier coefficients of order 6 and 30 (random distributions of 1 to
+ * 200 words) the measured maxima of |delta s| |a| |b| were 6e-8 (FLOAT32),
+ * 4e-4 (FLOAT16) and 6e-3 (INT8), the median relative deviations of s 2e-8,
+ * 1e-4 and 1e-3.
+ *
+ * Objects of this class are immutable.
+ *
+ * @author Javier Fuentes (j.fuentes06@ufromail.cl)
+ * @version 1.0
+ */
+public final class SpectralVector {
+
+    /**
+     * Encoding of the coefficients
+     */
+    public enum Format {
+	FLOAT32(1), FLOAT16(2), INT8(3), SPARSE(4);
+
+	private final byte code;
+
+	private Format(int code) {
+	    this.code = (byte)code;
+	}
+
+	public byte getCode() {
+	    return code;
+	}
+
+	/**
+	 * @return The format with the given code
+	 * @throws IllegalArgumentException If there is no such format
+	 */
+	public static Format fromCode(byte code) {
+	    // No values(), it copies the array on every call
+	    switch (code) {
+	    case 1:
+		return FLOAT32;
+	    case 2:
+		return FLOAT16;
+	    case 3:
+		return INT8;
+	    case 4:
+		return SPARSE;
+	    default:
+		throw new IllegalArgumentException("Unknown format " + code);
+	    }
+	}
+    }
+
+    /**
+     * Length of the header (format and dimension)
+     */
+    private static final int HEADER = 3;
+
+    private final Format format;
+    private final int dimension;
+
+    /**
+     * Buffer with the encoded vector, starting at offset (absolute access
+     * only, position and limit are not used)
+     */
+    private final ByteBuffer buffer;
+    private final int offset;
+
+    /**
+     * Scale (INT8) or number of entries (SPARSE)
+     */
+    private final float scale;
+    private final int entries;
+
+    /**
+     * Squared norm of the (encoded) vector
+     */
+    private final double sumOfSquares;
+
+    /**
+     * Private constructor, vectors are created by encode(), encodeSparse()
+     * and wrap()
+     */
+    private SpectralVector(ByteBuffer buffer, int offset) {
+	this.buffer = buffer;
+	this.offset = offset;
+	this.format = Format.fromCode(buffer.get(offset));
+	this.dimension = buffer.getShort(offset + 1) & 0xFFFF;
+	this.scale = format == Format.INT8 ? buffer.getFloat(offset + HEADER)
+		: 1;
+	this.entries = format == Format.SPARSE
+		? buffer.getShort(offset + HEADER) & 0xFFFF : dimension;
+	this.sumOfSquares = sumOfSquares(buffer, offset);
+    }
+
+    /**
+     * Encodes coefficients in a dense format
+     *
+     * @param coeffs Array containing the coefficients
+     * @param coeffsOffset Index of c_0 in coeffs
+     * @param dimension Number of coefficients (order + 1, at most 65535)
+     * @param format FLOAT32, FLOAT16 or INT8
+     * @return The encoded vector
+     */
+    public static SpectralVector encode(double[] coeffs, int coeffsOffset,
+	    int dimension, Format format) {
+	checkDimension(dimension);
+	ByteBuffer buffer;
+	switch (format) {
+	case FLOAT32:
+	    buffer = header(format, dimension, 4 * dimension);
+	    for (int n = 0; n < dimension; n++) {
+		buffer.putFloat((float)coeffs[coeffsOffset + n]);
+	    }
+	    break;
+	case FLOAT16:
+	    buffer = header(format, dimension, 2 * dimension);
+	    for (int n = 0; n < dimension; n++) {
+		buffer.putShort(toHalf((float)coeffs[coeffsOffset + n]));
+	    }
+	    break;
+	case INT8:
+	    buffer = header(format, dimension, 4 + dimension);
+	    double max = 0;
+	    for (int n = 0; n < dimension; n++) {
+		max = Math.max(max, Math.abs(coeffs[coeffsOffset + n]));
+	    }
+	    float scale = (float)(max / 127);
+	    buffer.putFloat(scale);
+	    for (int n = 0; n < dimension; n++) {
+		buffer.put(scale == 0 ? 0
+			: (byte)Math.round(coeffs[coeffsOffset + n] / scale));
+	    }
+	    break;
+	default:
+	    throw new IllegalArgumentException(
+		    "Use encodeSparse() for the sparse format");
+	}
+	return new SpectralVector(buffer, 0);
+    }
+
+    /**
+     * Encodes the k coefficients of largest magnitude
+     *
+     * @param coeffs Array containing the coefficients
+     * @param coeffsOffset Index of c_0 in coeffs
+     * @param dimension Number of coefficients (order + 1, at most 65535)
+     * @param k Maximum number of entries
+     * @return The encoded vector
+     */
+    public static SpectralVector encodeSparse(double[] coeffs,
+	    int coeffsOffset, int dimension, int k) {
+	checkDimension(dimension);
+	k = Math.max(0, Math.min(k, dimension));
+
+	// Partial selection sort of the indices by magnitude (k is small)
+	int[] indices = new int[dimension];
+	for (int n = 0; n < dimension; n++) {
+	    indices[n] = n;
+	}
+	for (int i = 0; i < k; i++) {
+	    int largest = i;
+	    for (int j = i + 1; j < dimension; j++) {
+		if (Math.abs(coeffs[coeffsOffset + indices[j]])
+			> Math.abs(coeffs[coeffsOffset + indices[largest]])) {
+		    largest = j;
+		}
+	    }
+	    int swap = indices[i];
+	    indices[i] = indices[largest];
+	    indices[largest] = swap;
+	}
+	java.util.Arrays.sort(indices, 0, k);
+
+	ByteBuffer buffer = header(Format.SPARSE, dimension, 2 + 6 * k);
+	buffer.putShort((short)k);
+	for (int i = 0; i < k; i++) {
+	    buffer.putShort((short)indices[i]);
+	    buffer.putFloat((float)coeffs[coeffsOffset + indices[i]]);
+	}
+	return new SpectralVector(buffer, 0);
+    }
+
+    /**
+     * Reads an encoded vector without copying it
+     *
+     * @param buffer Buffer containing the encoded vector (e. g. a
+     *  MappedByteBuffer); it must not be changed afterwards
+     * @param offset Index of the first byte of the vector in buffer
+     * @return The vector
+     * @throws IllegalArgumentException If the format is unknown
+     */
+    public static SpectralVector wrap(ByteBuffer buffer, int offset) {
+	return new SpectralVector(buffer, offset);
+    }
+
+    private static void checkDimension(int dimension) {
+	if (dimension < 0 || dimension > 0xFFFF) {
+	    throw new IllegalArgumentException("Dimension out of range: "
+		    + dimension);
+	}
+    }
+
+    private static ByteBuffer header(Format format, int dimension,
+	    int dataLength) {
+	ByteBuffer buffer = ByteBuffer.allocate(HEADER + dataLength);
+	buffer.put(format.getCode());
+	buffer.putShort((short)dimension);
+	return buffer;
+    }
+
+    public Format getFormat() {
+	return format;
+    }
+
+    /**
+     * @return Number of coefficients (order + 1)
+     */
+    public int getDimension() {
+	return dimension;
+    }
+
+    /**
+     * @return Number of bytes of the encoded vector
+     */
+    public int getEncodedLength() {
+	return getEncodedLength(buffer, offset);
+    }
+
+    /**
+     * Number of bytes of an encoded vector, without creating an object
+     *
+     * @param buffer Buffer containing the encoded vector
+     * @param offset Index of the first byte of the vector in buffer
+     * @return The length
+     */
+    public static int getEncodedLength(ByteBuffer buffer, int offset) {
+	int dimension = buffer.getShort(offset + 1) & 0xFFFF;
+	switch (Format.fromCode(buffer.get(offset))) {
+	case FLOAT32:
+	    return HEADER + 4 * dimension;
+	case FLOAT16:
+	    return HEADER + 2 * dimension;
+	case INT8:
+	    return HEADER + 4 + dimension;
+	default:
+	    return HEADER + 2 + 6 * (buffer.getShort(offset + HEADER) & 0xFFFF);
+	}
+    }
+
+    /**
+     * Copies the encoded vector to a buffer (at its position)
+     *
+     * @param out Buffer with at least getEncodedLength() bytes remaining
+     */
+    public void writeTo(ByteBuffer out) {
+	for (int i = 0; i < getEncodedLength(); i++) {
+	    out.put(buffer.get(offset + i));
+	}
+    }
+
+    /**
+     * Index of entry i (equal to i except for the sparse format)
+     */
+    private int index(int i) {
+	return format == Format.SPARSE
+		? buffer.getShort(offset + HEADER + 2 + 6 * i) & 0xFFFF : i;
+    }
+
+    /**
+     * Value of entry i
+     */
+    private double value(int i) {
+	switch (format) {
+	case FLOAT32:
+	    return buffer.getFloat(offset + HEADER + 4 * i);
+	case FLOAT16:
+	    return fromHalf(buffer.getShort(offset + HEADER + 2 * i));
+	case INT8:
+	    return scale * buffer.get(offset + HEADER + 4 + i);
+	default:
+	    return buffer.getFloat(offset + HEADER + 2 + 6 * i + 2);
+	}
+    }
+
+    /**
+     * Returns the coefficient c_n
+     *
+     * @param n Order (0 <= n < dimension)
+     * @return The decoded coefficient
+     */
+    public double get(int n) {
+	if (format != Format.SPARSE) {
+	    return value(n);
+	}
+	// Binary search, the indices are sorted
+	int low = 0, high = entries - 1;
+	while (low <= high) {
+	    int middle = (low + high) >>> 1;
+	    int index = index(middle);
+	    if (index < n) {
+		low = middle + 1;
+	    } else if (index > n) {
+		high = middle - 1;
+	    } else {
+		return value(middle);
+	    }
+	}
+	return 0;
+    }
+
+    /**
+     * Decodes the vector
+     *
+     * @param out Array for the coefficients c_0, ..., c_{dimension-1}
+     * @param outOffset Index of c_0 in out
+     */
+    public void decode(double[] out, int outOffset) {
+	if (format == Format.SPARSE) {
+	    java.util.Arrays.fill(out, outOffset, outOffset + dimension, 0);
+	}
+	for (int i = 0; i < entries; i++) {
+	    out[outOffset + index(i)] = value(i);
+	}
+    }
+
+    /**
+     * Decodes an encoded vector, without creating an object
+     *
+     * @param buffer Buffer containing the encoded vector
+     * @param offset Index of the first byte of the vector in buffer
+     * @param out Array for the coefficients c_0, ..., c_{dimension-1}
+     * @param outOffset Index of c_0 in out
+     * @return The dimension
+     */
+    public static int decode(ByteBuffer buffer, int offset, double[] out,
+	    int outOffset) {
+	int dimension = buffer.getShort(offset + 1) & 0xFFFF;
+	int data = offset + HEADER;
+	switch (Format.fromCode(buffer.get(offset))) {
+	case FLOAT32:
+	    for (int n = 0; n < dimension; n++) {
+		out[outOffset + n] = buffer.getFloat(data + 4 * n);
+	    }
+	    break;
+	case FLOAT16:
+	    for (int n = 0; n < dimension; n++) {
+		out[outOffset + n] = fromHalf(buffer.getShort(data + 2 * n));
+	    }
+	    break;
+	case INT8:
+	    double scale = buffer.getFloat(data);
+	    for (int n = 0; n < dimension; n++) {
+		out[outOffset + n] = scale * buffer.get(data + 4 + n);
+	    }
+	    break;
+	default:
+	    java.util.Arrays.fill(out, outOffset, outOffset + dimension, 0);
+	    int entries = buffer.getShort(data) & 0xFFFF;
+	    for (int i = 0; i < entries; i++) {
+		out[outOffset + (buffer.getShort(data + 2 + 6 * i) & 0xFFFF)] =
+			buffer.getFloat(data + 2 + 6 * i + 2);
+	    }
+	}
+	return dimension;
+    }
+
+    /**
+     * @return The squared norm \sum c_n^2 of the encoded vector
+     */
+    public double sumOfSquares() {
+	return sumOfSquares;
+    }
+
+    /**
+     * Scalar product with uncompressed coefficients
+     *
+     * @param b Array containing the coefficients b_0, b_1, ...
+     * @param bOffset Index of b_0 in b
+     * @param length Number of coefficients of b; missing coefficients of
+     *  either vector count as 0
+     * @return \sum c_n b_n
+     */
+    public double dot(double[] b, int bOffset, int length) {
+	return dot(buffer, offset, b, bOffset, length);
+    }
+
+    /**
+     * Scalar product of an encoded vector with uncompressed coefficients,
+     * without creating an object (e. g. for vectors in a MappedByteBuffer)
+     *
+     * @param buffer Buffer containing the encoded vector
+     * @param offset Index of the first byte of the vector in buffer
+     * @param b Array containing the coefficients b_0, b_1, ...
+     * @param bOffset Index of b_0 in b
+     * @param length Number of coefficients of b; missing coefficients of
+     *  either vector count as 0
+     * @return \sum c_n b_n
+     */
+    public static double dot(ByteBuffer buffer, int offset, double[] b,
+	    int bOffset, int length) {
+	int dimension = Math.min(buffer.getShort(offset + 1) & 0xFFFF, length);
+	int data = offset + HEADER;
+	double sum = 0;
+	switch (Format.fromCode(buffer.get(offset))) {
+	case FLOAT32:
+	    for (int n = 0; n < dimension; n++) {
+		sum += buffer.getFloat(data + 4 * n) * b[bOffset + n];
+	    }
+	    return sum;
+	case FLOAT16:
+	    for (int n = 0; n < dimension; n++) {
+		sum += fromHalf(buffer.getShort(data + 2 * n)) * b[bOffset + n];
+	    }
+	    return sum;
+	case INT8:
+	    for (int n = 0; n < dimension; n++) {
+		sum += buffer.get(data + 4 + n) * b[bOffset + n];
+	    }
+	    return buffer.getFloat(data) * sum;
+	default:
+	    int entries = buffer.getShort(data) & 0xFFFF;
+	    for (int i = 0; i < entries; i++) {
+		int n = buffer.getShort(data + 2 + 6 * i) & 0xFFFF;
+		if (n < dimension) {
+		    sum += buffer.getFloat(data + 2 + 6 * i + 2) * b[bOffset + n];
+		}
+	    }
+	    return sum;
+	}
+    }
+
+    /**
+     * Squared norm of an encoded vector, without creating an object
+     *
+     * @param buffer Buffer containing the encoded vector
+     * @param offset Index of the first byte of the vector in buffer
+     * @return \sum c_n^2
+     */
+    public static double sumOfSquares(ByteBuffer buffer, int offset) {
+	int dimension = buffer.getShort(offset + 1) & 0xFFFF;
+	int data = offset + HEADER;
+	double sum = 0;
+	switch (Format.fromCode(buffer.get(offset))) {
+	case FLOAT32:
+	    for (int n = 0; n < dimension; n++) {
+		double value = buffer.getFloat(data + 4 * n);
+		sum += value * value;
+	    }
+	    return sum;
+	case FLOAT16:
+	    for (int n = 0; n < dimension; n++) {
+		double value = fromHalf(buffer.getShort(data + 2 * n));
+		sum += value * value;
+	    }
+	    return sum;
+	case INT8:
+	    double scale = buffer.getFloat(data);
+	    for (int n = 0; n < dimension; n++) {
+		double value = scale * buffer.get(data + 4 + n);
+		sum += value * value;
+	    }
+	    return sum;
+	default:
+	    int entries = buffer.getShort(data) & 0xFFFF;
+	    for (int i = 0; i < entries; i++) {
+		double value = buffer.getFloat(data + 2 + 6 * i + 2);
+		sum += value * value;
+	    }
+	    return sum;
+	}
+    }
+
+    /**
+     * Scalar product of two encoded vectors
+     *
+     * Missing coefficients (different dimensions, sparse format) count as 0.
+     *
+     * @param other The other vector
+     * @return \sum c_n other_n
+     */
+    public double dot(SpectralVector other) {
+	if (format == Format.SPARSE && other.format == Format.SPARSE) {
+	    // Merge of the sorted indices
+	    double sum = 0;
+	    int i = 0, j = 0;
+	    while (i < entries && j < other.entries) {
+		int n = index(i), m = other.index(j);
+		if (n < m) {
+		    i++;
+		} else if (n > m) {
+		    j++;
+		} else {
+		    sum += value(i++) * other.value(j++);
+		}
+	    }
+	    return sum;
+	}
+	if (other.format == Format.SPARSE) {
+	    return other.dot(this);
+	}
+	double sum = 0;
+	for (int i = 0; i < entries; i++) {
+	    int n = index(i);
+	    if (n < other.dimension) {
+		sum += value(i) * other.value(n);
+	    }
+	}
+	return sum;
+    }
+
+    /**
+     * Converts a float to IEEE 754 half precision (round to nearest even)
+     *
+     * @param value The value
+     * @return The bits of the half-precision value
+     */
+    public static short toHalf(float value) {
+	int bits = Float.floatToRawIntBits(value);
+	int sign = (bits >>> 16) & 0x8000;
+	int exponent = (bits >>> 23) & 0xFF;
+	int mantissa = bits & 0x7FFFFF;
+
+	if (exponent == 0xFF) {
+	    // Infinity or NaN (keeping a quiet NaN)
+	    return (short)(sign | 0x7C00 | (mantissa != 0 ? 0x200 : 0));
+	}
+	int halfExponent = exponent - 127 + 15;
+	if (halfExponent >= 0x1F) {
+	    // Overflow
+	    return (short)(sign | 0x7C00);
+	}
+	if (halfExponent <= 0) {
+	    // Subnormal or zero
+	    if (halfExponent < -10) {
+		return (short)sign;
+	    }
+	    mantissa |= 0x800000;
+	    int shift = 14 - halfExponent;
+	    int half = mantissa >>> shift;
+	    int rest = mantissa & ((1 << shift) - 1);
+	    int halfway = 1 << (shift - 1);
+	    if (rest > halfway || (rest == halfway && (half & 1) != 0)) {
+		half++;
+	    }
+	    return (short)(sign | half);
+	}
+	int half = (halfExponent << 10) | (mantissa >>> 13);
+	int rest = mantissa & 0x1FFF;
+	if (rest > 0x1000 || (rest == 0x1000 && (half & 1) != 0)) {
+	    // May carry into the exponent, up to infinity
+	    half++;
+	}
+	return (short)(sign | half);
+    }
+
+    /**
+     * Converts IEEE 754 half precision to a float
+     *
+     * @param half The bits of the half-precision value
+     * @return The value
+     */
+    public static float fromHalf(short half) {
+	int sign = (half & 0x8000) << 16;
+	int exponent = (half >>> 10) & 0x1F;
+	int mantissa = half & 0x3FF;
+
+	if (exponent == 0x1F) {
+	    return Float.intBitsToFloat(sign | 0x7F800000 | (mantissa << 13));
+	}
+	if (exponent == 0) {
+	    if (mantissa == 0) {
+		return Float.intBitsToFloat(sign);
+	    }
+	    // Subnormal: mantissa * 2^-24
+	    float value = mantissa * 5.9604645E-8f;
+	    return sign != 0 ? -value : value;
+	}
+	return Float.intBitsToFloat(sign | ((exponent - 15 + 127) << 23)
+		| (mantissa << 13));
+    }
+}
@@ -0,0 +1,126 @@
+package models;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+
+/**
+ *
+ * Clase inmutable con los terminos relacionados a una query y sus pesos (expansion de la query).
+ *
+ * <p>Los terminos estan ordenados de mayor a menor peso y no se repiten.
+ *
+ * @author Javier Fuentes (j.fuentes06@ufromail.cl)
+ * @version 1.0
+ * @since 1.0
+ */
+public final class Expansion {
+
+	/**
+	 * Expansion sin terminos.
+	 */
+	public static final Expansion VACIA = new Expansion(new String[0], new float[0]);
+
+	private final String[] terms;
+	private final float[] values;
+
+	/**
+	 * Constructor de la clase.
+	 *
+	 * <p>Los arreglos se copian. Se ignoran los terminos nulos o vacios; si un termino se repite
+	 * se deja su mayor peso.
+	 *
+	 * @param terms terminos.
+	 * @param values peso de cada termino.
+	 */
+	public Expansion(String[] terms, float[] values) {
+		if (terms.length != values.length) {
+			throw new IllegalArgumentException("Distinto numero de terminos y pesos");
+		}
+		LinkedHashMap<String, Float> pesos = new LinkedHashMap<String, Float>();
+		for (int i = 0; i < terms.length; i++) {
+			if (terms[i] == null || terms[i].isEmpty()) continue;
+			Float peso = pesos.get(terms[i]);
+			if (peso == null || peso < values[i]) {
+				pesos.put(terms[i], values[i]);
+			}
+		}
+
+		/**
+		 * Orden de mayor a menor peso (insercion; en empates queda el primero).
+		 */
+		this.terms = new String[pesos.size()];
+		this.values = new float[pesos.size()];
+		int n = 0;
+		for (Map.Entry<String, Float> e : pesos.entrySet()) {
+			int j = n++;
+			while (j > 0 && this.values[j - 1] < e.getValue()) {
+				this.terms[j] = this.terms[j - 1];
+				this.values[j] = this.values[j - 1];
+				j--;
+			}
+			this.terms[j] = e.getKey();
+			this.values[j] = e.getValue();
+		}
+	}
+
+	/**
+	 * @return numero de terminos.
+	 */
+	public int size() {
+		return terms.length;
+	}
+
+	/**
+	 * @param i posicion, de 0 a {@link #size()} - 1.
+	 * @return termino en la posicion i.
+	 */
+	public String getTerm(int i) {
+		return terms[i];
+	}
+
+	/**
+	 * @param i posicion, de 0 a {@link #size()} - 1.
+	 * @return peso del termino en la posicion i.
+	 */
+	public float getValue(int i) {
+		return values[i];
+	}
+
+	/**
+	 * @return copia de los terminos.
+	 */
+	public String[] getTerms() {
+		return terms.clone();
+	}
+
+	/**
+	 * @return copia de los pesos.
+	 */
+	public float[] getValues() {
+		return values.clone();
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (!(o instanceof Expansion)) return false;
+		Expansion other = (Expansion)o;
+		return Arrays.equals(terms, other.terms) && Arrays.equals(values, other.values);
+	}
+
+	@Override
+	public int hashCode() {
+		return 31 * Arrays.hashCode(terms) + Arrays.hashCode(values);
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder("[");
+		for (int i = 0; i < terms.length; i++) {
+			if (i > 0) sb.append(", ");
+			sb.append(terms[i]).append('=').append(values[i]);
+		}
+		return sb.append(']').toString();
+	}
+}
@@ -12,14 +12,13 @@ package models;
 public class Query {
 
 	private String query;
-	private String[] terms;
-	private float[] values;
+	private Expansion expansion = Expansion.VACIA;
 	
 	/**
 	 * Constructor de la clase.
 	 * 
 	 * <p>Recibe como parametros una query, una lista de terminos relacionados
-	 *  a la query mas los pesos asociados a los terminos.
+	 *  a la query mas los pesos asociados a los terminos (ver {@link models.Expansion}).
 	 * 
 	 * 
 	 * @param query
@@ -29,8 +28,7 @@ public class Query {
 	public Query(String query, String[] terms, float[] values) {
 		super();
 		this.query = query;
-		this.terms = terms;
-		this.values = values;
+		this.expansion = new Expansion(terms, values);
 	}
 	
 	/**
@@ -54,28 +52,35 @@ public class Query {
 	}
 	
 	/**
-	 * Obtiene los terminos.
-	 * @return Arreglo de terminos.
+	 * Obtiene los terminos relacionados.
+	 * @return Copia de los terminos, de mayor a menor peso.
 	 */
 	public String[] getTerms() {
-		return terms;
+		return expansion.getTerms();
 	}
 	
 	/**
 	 * Obtiene los pesos de sus respectivos terminos.
-	 * @return Arreglo de pesos.
+	 * @return Copia de los pesos.
 	 */
 	public float[] getValues() {
-		return values;
+		return expansion.getValues();
 	}
 	
-	
-	public void setTerms(String[] terms) {
-		this.terms = terms;
+	/**
+	 * Obtiene los terminos relacionados con sus pesos.
+	 * @return Expansion de la query, vacia si aun no se calcula.
+	 */
+	public Expansion getExpansion() {
+		return expansion;
 	}
-
-	public void setValues(float[] values) {
-		this.values = values;
+	
+	/**
+	 * Reemplaza los terminos relacionados (ver {@link search.RelatedTermsCollector}).
+	 * @param expansion
+	 */
+	public void setExpansion(Expansion expansion) {
+		this.expansion = expansion;
 	}
 
 	@Override
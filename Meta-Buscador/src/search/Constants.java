@@ -15,6 +15,10 @@ public class Constants {
 	   public static final String SNIPPET="snippet"; 
 	   public static final String DOCID="doc_id"; 
 	   public static final int MAX_SEARCH = 10;
+	   /**
+	    * Numero de terminos relacionados a la query que se guardan al indexar (ver {@link search.RelatedTermsCollector}).
+	    */
+	   public static final int TERMINOS_RELACIONADOS = 9;
 	   public static int PAGES = 50;
 	   /**
 		 * Aumenta el tamaño del documento en un 10% al comienzo de este,
@@ -22,4 +26,67 @@ public class Constants {
 		 *  los bordes del documento por la periodicidad de las funciones seno y coseno
 		 */
 	   public static final float PORCENTAJE_LARGO_EXTRA_DOCUMENTO = 0.15F;
+	   /**
+	    * Orden de la expansion de las ubicaciones de cada palabra.
+	    * Con Fourier, desde {@link math.Fourier#HIGH_ORDER} se calcula en modo de alto orden (recurrencias).
+	    * Con Haar conviene un orden de la forma 2^J - 1 (niveles completos).
+	    */
+	   public static final int ORDEN_EXPANSION = 6;
+	   /**
+	    * Expansion usada para las ubicaciones de cada palabra
+	    * (ver {@link math.AbstractExpansion#createExpansion(String)}), por ejemplo "Fourier" o "Haar".
+	    * El largo extra del documento solo se agrega en expansiones periodicas.
+	    */
+	   public static final String EXPANSION = "Fourier";
+	   /**
+	    * Seleccion adaptativa del orden de cada palabra: se agregan ordenes hasta que la energia
+	    * capturada (suma de los cuadrados de los coeficientes) alcanza {@link #UMBRAL_ENERGIA} de la
+	    * energia hasta {@link #ORDEN_EXPANSION}, entre {@link #ORDEN_MINIMO}
+	    * y {@link #ORDEN_EXPANSION}. El orden elegido se guarda en el payload.
+	    */
+	   public static final boolean ORDEN_ADAPTATIVO = false;
+	   public static final float UMBRAL_ENERGIA = 0.9F;
+	   public static final int ORDEN_MINIMO = 2;
+	   /**
+	    * Modo de histograma de la expansion de Fourier: las palabras con mas apariciones que
+	    * intervalos se expanden desde un histograma de INTERVALOS_POR_ORDEN * (orden + 1) intervalos,
+	    * con un costo que no depende del numero de apariciones (ver {@link math.Fourier#setBinsPerOrder(int)}).
+	    * 0 desactiva el modo.
+	    */
+	   public static final int INTERVALOS_POR_ORDEN = 0;
+	   /**
+	    * Modo de indice independiente de la query: al indexar solo se guardan los coeficientes de cada
+	    * palabra (en el archivo de espectros, sin payloads) y la similitud con la query se calcula al buscar
+	    * (ver {@link search.SpectralQuery}). El indice se guarda por conjunto de paginas y no por query
+	    * (ver {@link util.DBManager#getPageSetIndexFile(models.Query)}), por lo que sirve para cualquier query
+	    * sobre las mismas paginas.
+	    */
+	   public static final boolean INDICE_INDEPENDIENTE = false;
+	   /**
+	    * En el modo independiente, los coeficientes no se calculan al indexar sino al buscar, desde las
+	    * posiciones de las postings del indice (ver {@link search.PostingsSpectra}): al indexar solo se hace
+	    * el analisis simple ({@link search.PositionAnalyzer}) y se guarda el largo de cada documento
+	    * ({@link #LARGO}). Cambiar la expansion o su orden no requiere volver a indexar.
+	    */
+	   public static final boolean ESPECTROS_PEREZOSOS = false;
+	   /**
+	    * Campo (docvalue) con el numero de palabras de cada documento. Se guarda en el modo perezoso y en el
+	    * modo dependiente de la query, donde las queries de varias palabras se puntuan por cercania
+	    * ({@link search.SpectralProximityQuery}) con coeficientes calculados desde las postings.
+	    */
+	   public static final String LARGO = "largo";
+	   /**
+	    * Numero de coeficientes (documento, palabra) guardados por segmento del indice al calcularlos
+	    * desde las postings.
+	    */
+	   public static final int CAPACIDAD_ESPECTROS = 4096;
+	   /**
+	    * Archivo de espectros del indice (ver {@link search.SpectralStore}), en el directorio del indice.
+	    */
+	   public static final String ARCHIVO_ESPECTROS = "espectros.spc";
+	   /**
+	    * Codificacion de los coeficientes en el archivo de espectros
+	    * (ver {@link math.SpectralVector.Format}, el formato disperso no se usa).
+	    */
+	   public static final math.SpectralVector.Format FORMATO_ESPECTROS = math.SpectralVector.Format.FLOAT32;
 }
\ No newline at end of file
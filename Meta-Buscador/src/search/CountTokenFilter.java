@@ -2,33 +2,65 @@ package search;
 
 import java.io.IOException;
 import java.util.Arrays;
-import java.util.HashMap;
-import java.util.LinkedList;
+
+import math.PositionAccumulator;
 
 import org.apache.lucene.analysis.TokenFilter;
 import org.apache.lucene.analysis.TokenStream;
 import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.analysis.tokenattributes.OffsetAttribute;
+import org.apache.lucene.analysis.tokenattributes.PositionIncrementAttribute;
 
 
 /**
- * 
+ *
  * Clase de filtro para el conteo de la ubicac&oacute;n de las palabras en un TokenStrem
- * 
- * 
- * 
+ *
+ * <p>En la primera llamada a {@link #incrementToken()} se lee el stream de entrada completo,
+ * generando las ubicaciones de las palabras y guardando los tokens. Luego los tokens
+ * guardados se entregan uno a uno, de modo que los filtros siguientes
+ * (ver {@link search.PayloadFilter}) ya disponen de las ubicaciones de todo el documento,
+ * sin tener que analizar el documento dos veces.
+ *
+ * <p>Las palabras se identifican con un {@link search.TermHash} sobre el buffer del termino, y las
+ * ubicaciones y los tokens se guardan en arreglos de enteros que se reutilizan entre documentos,
+ * por lo que no se generan objetos por token.
+ *
  * @author javier
  * @version 1.0
  * @since 1.0
  */
 public class CountTokenFilter extends TokenFilter{
-	
-	private HashMap<String, LinkedList<Integer>> lista;
+
 	private CharTermAttribute term;
+	private OffsetAttribute offset;
+	private PositionIncrementAttribute incremento;
 	private int pos;
-	
+
+	/**
+	 * Palabras del documento y ubicaciones de cada una (la distribucion de una palabra es su identificador).
+	 */
+	private TermHash terminos;
+	private PositionAccumulator ubicaciones;
+
+	/**
+	 * Tokens guardados durante la lectura del stream de entrada: identificador de la palabra,
+	 * offsets e incremento de posicion.
+	 */
+	private int[] ids;
+	private int[] inicios;
+	private int[] finales;
+	private int[] incrementos;
+
+	/**
+	 * Indica si ya se leyo el stream de entrada, y el siguiente token a entregar.
+	 */
+	private boolean leido;
+	private int siguiente;
+
 	/**
 	 * Constructor de la clase.
-	 * 
+	 *
 	 * @param input stream de entrada.
 	 */
 	protected CountTokenFilter(TokenStream input) {
@@ -37,56 +69,122 @@ public class CountTokenFilter extends TokenFilter{
 		 * Acceso a los atributos de los tokens
 		 */
 		term = addAttribute(CharTermAttribute.class);
-		lista = new HashMap<String, LinkedList<Integer>>();
+		offset = addAttribute(OffsetAttribute.class);
+		incremento = addAttribute(PositionIncrementAttribute.class);
+		terminos = new TermHash();
+		ubicaciones = new PositionAccumulator();
+		ids = new int[64];
+		inicios = new int[64];
+		finales = new int[64];
+		incrementos = new int[64];
 		pos = 0;
 	}
 
-	
-	
+
+
 	/**
-	 * 
-	 * Genera un mapa de la ubicaci&oacute;n de cada token en el documento.
-	 * 
-	 * <p>Genera un {@link java.util.HashMap} con las ubicaciones de las palabras en el documento.
-	 * 
+	 *
+	 * Registra la ubicaci&oacute;n de cada token en el documento.
+	 *
+	 * <p>Lee el documento completo con la primera llamada, y luego entrega los tokens del documento.
+	 *
 	 * @throws IOException
 	 */
 	@Override
 	public boolean incrementToken() throws IOException
 	{
-		if (!input.incrementToken()) return false;
-		
-		/**
-		 * Obtencion de el termino correspondiente a cada token
-		 */
-		StringBuilder builder = new StringBuilder();
-		builder.append(Arrays.copyOfRange(term.buffer(), 0, term.length()));
-		
-		
-		/**
-		 * Asocia un token a una lista de sus ubicaciones en el documento.
-		 */
-		if (lista.containsKey(builder.toString()))
+		if (!leido)
 		{
-			lista.get(builder.toString()).add(pos);
+			this.leerDocumento();
 		}
-		else
+
+		if (siguiente == pos) return false;
+
+		/**
+		 * Entrega del siguiente token guardado, copiando los caracteres de la palabra al buffer del termino.
+		 */
+		clearAttributes();
+		int id = ids[siguiente];
+		char[] buffer = term.resizeBuffer(terminos.getLength(id));
+		term.setLength(terminos.copyTerm(id, buffer));
+		offset.setOffset(inicios[siguiente], finales[siguiente]);
+		incremento.setPositionIncrement(incrementos[siguiente]);
+		siguiente++;
+		return true;
+	}
+
+	/**
+	 * Lee el stream de entrada completo.
+	 *
+	 * @throws IOException
+	 */
+	private void leerDocumento() throws IOException
+	{
+		while (input.incrementToken())
 		{
-			lista.put(builder.toString(), new LinkedList<Integer>());
-			lista.get(builder.toString()).add(pos);
+			/**
+			 * Identificador de la palabra, buscada directamente sobre el buffer del termino.
+			 */
+			int id = terminos.add(term.buffer(), term.length());
+
+			/**
+			 * Asocia el token a sus ubicaciones en el documento.
+			 */
+			ubicaciones.add(id, pos);
+
+			/**
+			 * Se guarda el token para entregarlo despues.
+			 */
+			if (pos == ids.length)
+			{
+				ids = Arrays.copyOf(ids, 2 * pos);
+				inicios = Arrays.copyOf(inicios, 2 * pos);
+				finales = Arrays.copyOf(finales, 2 * pos);
+				incrementos = Arrays.copyOf(incrementos, 2 * pos);
+			}
+			ids[pos] = id;
+			inicios[pos] = offset.startOffset();
+			finales[pos] = offset.endOffset();
+			incrementos[pos] = incremento.getPositionIncrement();
+			pos++;
 		}
-		pos++;
-		return true;
+		leido = true;
+	}
+
+	@Override
+	public void reset() throws IOException
+	{
+		super.reset();
+		terminos.clear();
+		ubicaciones.clear();
+		pos = 0;
+		leido = false;
+		siguiente = 0;
 	}
-	
-	
+
+
+	/**
+	 * Obtiene las palabras del documento.
+	 *
+	 * <p>El identificador de cada palabra es su distribucion en {@link #getUbicaciones()}.
+	 * Las palabras estan completas a partir de la primera llamada a {@link #incrementToken()}.
+	 * @return terminos
+	 */
+	public TermHash getTerminos()
+	{
+		return terminos;
+	}
+
 	/**
-	 * Obtiene el mapa de las palabras dentro del documento.
-	 * @return lista
+	 * Obtiene las ubicaciones de las palabras dentro del documento, por identificador de palabra
+	 * (ver {@link #getTerminos()}). El numero total de ubicaciones es el largo del documento.
+	 *
+	 * <p>Las ubicaciones estan completas a partir de la primera llamada a {@link #incrementToken()}.
+	 * @return ubicaciones
 	 */
-	public HashMap<String, LinkedList<Integer>> getLista()
+	public PositionAccumulator getUbicaciones()
 	{
-		return lista;
+		return ubicaciones;
 	}
 
 }
@@ -1,6 +1,8 @@
 package search;
 
+import java.io.File;
 import java.io.IOException;
+import java.util.Collections;
 
 import models.Page;
 import models.Query;
@@ -8,6 +10,8 @@ import models.Query;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.document.Field;
 import org.apache.lucene.document.IntField;
+import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.index.DirectoryReader;
 import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.IndexWriterConfig;
 import org.apache.lucene.index.IndexableField;
@@ -33,11 +37,36 @@ public class Indexer {
 	private Query query;
 	private Directory indexDir;
 	
+	/**
+	 * Clave de los datos del commit que marca un indice completo.
+	 */
+	private static final String COMPLETO = "completo";
+	
+	/**
+	 * Archivo de espectros del indice (ver {@link search.SpectralStore}), solo en el modo independiente de la
+	 * query sin {@link Constants#ESPECTROS_PEREZOSOS}: es el unico que lo lee al buscar.
+	 */
+	private SpectralStoreWriter espectros;
+	
+	/**
+	 * Indice solo con analisis simple, los coeficientes se calculan al buscar
+	 * (ver {@link Constants#ESPECTROS_PEREZOSOS}).
+	 */
+	private boolean perezoso = Constants.INDICE_INDEPENDIENTE && Constants.ESPECTROS_PEREZOSOS;
+	
+	/**
+	 * Terminos relacionados a la query, uno por thread de indexacion (solo en el modo dependiente de la query).
+	 */
+	private RelatedTermsCollector.PorThread relacionados =
+			new RelatedTermsCollector.PorThread(Constants.TERMINOS_RELACIONADOS);
+	
 	/**
 	 * Constructor de la clase.
 	 * 
 	 * <p>El constructor recibe como parametro una {@link models.Query} que permite generar o buscar un &iacute;ndice
-	 * asociado a esa consulta. Se genera un indice para cada consulta.
+	 * asociado a esa consulta. Se genera un indice para cada consulta; en el modo independiente
+	 * ({@link Constants#INDICE_INDEPENDIENTE}) uno para cada conjunto de paginas, que no se vuelve a generar
+	 * si ya existe completo.
 	 * 
 	 * @param query
 	 */
@@ -50,18 +79,42 @@ public class Indexer {
 			 * Las versiones son exclusivas de cada indice.
 			 * Para un indice generado con la version 4.10.3 no sera compatible con una version distinta.
 			 */
-			this.indexDir = FSDirectory.open(DBManager.getIndexFile(query));
+			File indexFile = Constants.INDICE_INDEPENDIENTE ? DBManager.getPageSetIndexFile(query)
+					: DBManager.getIndexFile(query);
+			File archivoEspectros = new File(indexFile, Constants.ARCHIVO_ESPECTROS);
+			
+			this.indexDir = FSDirectory.open(indexFile);
+			if (Constants.INDICE_INDEPENDIENTE && this.indiceCompleto(archivoEspectros))
+			{
+				return;
+			}
+			if (Constants.INDICE_INDEPENDIENTE && !perezoso)
+			{
+				this.espectros = new SpectralStoreWriter(archivoEspectros, Constants.FORMATO_ESPECTROS);
+			}
 			
 			/**
 			 * La version actual usada es 4.10.3
 			 */
-			this.config = new IndexWriterConfig(Version.LATEST, new PayloadAnalyzer(query,0));
+			this.config = new IndexWriterConfig(Version.LATEST,
+					perezoso ? new PositionAnalyzer() : new PayloadAnalyzer(query,0));
+			if (Constants.INDICE_INDEPENDIENTE)
+			{
+				/**
+				 * Un indice incompleto de una ejecucion anterior se reemplaza.
+				 */
+				this.config.setOpenMode(IndexWriterConfig.OpenMode.CREATE);
+			}
 			this.writer = new IndexWriter(indexDir, config);
 			
 			/**
 			 * Indexacion de las paginas al indice de lucene.
 			 */
 			this.indexPages();
+			if (!Constants.INDICE_INDEPENDIENTE)
+			{
+				query.setExpansion(relacionados.getExpansion());
+			}
 			System.out.println(writer.numDocs());
 			this.close();
 		} catch (Exception e) {
@@ -69,6 +122,37 @@ public class Indexer {
 		}
 	}
 
+	/**
+	 * Revisa si un indice independiente ya esta completo.
+	 * 
+	 * <p>El archivo de espectros se escribe al final, por lo que si existe el indice esta completo. Sin archivo
+	 * de espectros, el ultimo commit del indice se marca con {@link #COMPLETO}.
+	 * 
+	 * @param archivoEspectros archivo de espectros del indice.
+	 * @return true si el indice esta completo.
+	 * @throws IOException
+	 */
+	private boolean indiceCompleto(File archivoEspectros) throws IOException
+	{
+		if (!perezoso)
+		{
+			return archivoEspectros.exists();
+		}
+		if (!DirectoryReader.indexExists(indexDir))
+		{
+			return false;
+		}
+		DirectoryReader reader = DirectoryReader.open(indexDir);
+		try
+		{
+			return "true".equals(reader.getIndexCommit().getUserData().get(COMPLETO));
+		}
+		finally
+		{
+			reader.close();
+		}
+	}
+	
 	/**
 	 * Cierra la conexi&oacute;n al &iacute;ndice.
 	 * 
@@ -78,7 +162,16 @@ public class Indexer {
 	 */
 	public void close() throws IOException
 	{
+		if (perezoso)
+		{
+			writer.setCommitData(Collections.singletonMap(COMPLETO, "true"));
+			writer.commit();
+		}
 		writer.close();
+		if (espectros != null)
+		{
+			espectros.close();
+		}
 	}
 
 	
@@ -108,8 +201,46 @@ public class Indexer {
 					Document doc = getDocument(pages[i]);
 					doc.add(new IntField(Constants.DOCID, i, Field.Store.YES));
 					
+					/**
+					 * El identificador tambien como docvalue, para leerlo sin cargar el documento
+					 * al buscar en el archivo de espectros.
+					 */
+					doc.add(new NumericDocValuesField(Constants.DOCID, i));
+					
+					/**
+					 * El largo del documento es necesario para calcular los coeficientes desde las posiciones
+					 * al buscar: en el modo perezoso y, para las queries de varias palabras, en el modo dependiente
+					 * de la query (ver {@link search.SpectralProximityQuery}).
+					 */
+					if (perezoso || !Constants.INDICE_INDEPENDIENTE)
+					{
+						doc.add(new NumericDocValuesField(Constants.LARGO,
+								PositionAnalyzer.contarPalabras(pages[i].getContent())));
+					}
+					
+					if (perezoso)
+					{
+						/**
+						 * Solo analisis simple.
+						 */
+						writer.addDocument(doc);
+						writer.commit();
+						continue;
+					}
 					//Es necesario usar un nuevo PayloadAnalyzer para cada documento.
-					writer.addDocument(doc, new PayloadAnalyzer(query, 1/(i/Constants.PAGES)));
+					if (Constants.INDICE_INDEPENDIENTE)
+					{
+						/**
+						 * Sin query: solo los coeficientes de cada palabra.
+						 */
+						espectros.setDocumento(i);
+						writer.addDocument(doc, new PayloadAnalyzer(null, 0, espectros));
+					}
+					else
+					{
+						writer.addDocument(doc, new PayloadAnalyzer(query, 1/(i/Constants.PAGES), null,
+								relacionados));
+					}
 					
 					// Fundamental despues de haber incluido un documento.
 					writer.commit();
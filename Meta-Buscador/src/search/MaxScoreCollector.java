@@ -0,0 +1,148 @@
+package search;
+
+import java.io.IOException;
+
+import org.apache.lucene.index.AtomicReaderContext;
+import org.apache.lucene.search.Collector;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.Scorer;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.util.PriorityQueue;
+
+/**
+ *
+ * Recolector de los k documentos con mayor puntaje que permite saltar documentos al puntuar (MaxScore).
+ *
+ * <p>Funciona como {@link org.apache.lucene.search.TopScoreDocCollector} (en empates gana el documento
+ * anterior), pero cuando ya tiene k documentos informa el puntaje del k-esimo a los scorers de
+ * {@link search.SpectralQuery} (ver {@link search.SpectralScorer#setMinimoCompetitivo(float)}). Estos saltan
+ * los documentos cuya cota de puntaje no alcanza a entrar, sin leer todos sus coeficientes. El resultado es el
+ * mismo que con {@link org.apache.lucene.search.TopScoreDocCollector}, salvo el total de documentos
+ * ({@link org.apache.lucene.search.TopDocs#totalHits}), que cuenta solo los documentos recolectados.
+ *
+ * <p>Con otras consultas recolecta todos los documentos, sin saltar ninguno.
+ *
+ * @author Javier Fuentes (j.fuentes06@ufromail.cl)
+ * @version 1.0
+ * @since 1.0
+ *
+ */
+public class MaxScoreCollector extends Collector {
+
+	private final Cola cola;
+	private final int k;
+	private Scorer scorer;
+	private SpectralScorer spectral;
+	private int docBase;
+	private int totalHits;
+
+	/**
+	 * Documento con menor puntaje de la cola, null hasta que tiene k documentos.
+	 */
+	private ScoreDoc ultimo;
+
+	/**
+	 * Constructor de la clase.
+	 *
+	 * @param k numero de documentos.
+	 */
+	public MaxScoreCollector(int k)
+	{
+		if (k <= 0)
+		{
+			throw new IllegalArgumentException("k invalido: " + k);
+		}
+		this.k = k;
+		this.cola = new Cola(k);
+	}
+
+	@Override
+	public void setScorer(Scorer scorer) throws IOException
+	{
+		this.scorer = scorer;
+		this.spectral = scorer instanceof SpectralScorer ? (SpectralScorer)scorer : null;
+		if (spectral != null && ultimo != null)
+		{
+			spectral.setMinimoCompetitivo(ultimo.score);
+		}
+	}
+
+	@Override
+	public void collect(int doc) throws IOException
+	{
+		float score = scorer.score();
+		totalHits++;
+		if (ultimo == null)
+		{
+			cola.add(new ScoreDoc(docBase + doc, score));
+			if (cola.size() == k)
+			{
+				ultimo = cola.top();
+				this.informar();
+			}
+		}
+		else if (score > ultimo.score)
+		{
+			ultimo.doc = docBase + doc;
+			ultimo.score = score;
+			ultimo = cola.updateTop();
+			this.informar();
+		}
+	}
+
+	/**
+	 * Informa al scorer el puntaje minimo para entrar en la cola.
+	 */
+	private void informar()
+	{
+		if (spectral != null)
+		{
+			spectral.setMinimoCompetitivo(ultimo.score);
+		}
+	}
+
+	@Override
+	public void setNextReader(AtomicReaderContext context) throws IOException
+	{
+		docBase = context.docBase;
+	}
+
+	@Override
+	public boolean acceptsDocsOutOfOrder()
+	{
+		return false;
+	}
+
+	/**
+	 * Entrega los documentos de la cola, que queda vacia.
+	 *
+	 * @return documentos recolectados, de mayor a menor puntaje.
+	 */
+	public TopDocs topDocs()
+	{
+		ScoreDoc[] docs = new ScoreDoc[cola.size()];
+		for (int i = docs.length - 1; i >= 0; i--)
+		{
+			docs[i] = cola.pop();
+		}
+		float maximo = docs.length == 0 ? Float.NaN : docs[0].score;
+		return new TopDocs(totalHits, docs, maximo);
+	}
+
+	/**
+	 * Cola de prioridad con el documento de menor puntaje (y mayor numero, en empates) arriba.
+	 */
+	private static final class Cola extends PriorityQueue<ScoreDoc>
+	{
+		Cola(int k)
+		{
+			super(k);
+		}
+
+		@Override
+		protected boolean lessThan(ScoreDoc a, ScoreDoc b)
+		{
+			return a.score == b.score ? a.doc > b.doc : a.score < b.score;
+		}
+	}
+}
@@ -1,11 +1,6 @@
 package search;
 
-import java.io.IOException;
 import java.io.Reader;
-import java.io.StringReader;
-import java.util.Arrays;
-import java.util.HashMap;
-import java.util.LinkedList;
 
 import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.analysis.TokenFilter;
@@ -28,14 +23,41 @@ import org.apache.lucene.analysis.core.WhitespaceTokenizer;
 public class PayloadAnalyzer extends Analyzer{
 	private models.Query query;
 	private float docValue;
+	private SpectralSink espectros;
+	private RelatedTermsCollector.PorThread relacionados;
 	
 	/**
 	 * Constructor de la clase.
 	 * @param query consulta.
 	 */
 	public PayloadAnalyzer(models.Query query, float doc) {
+		this(query, doc, null);
+	}
+	
+	/**
+	 * Constructor de la clase.
+	 * @param query consulta.
+	 * @param doc valor del documento.
+	 * @param espectros destino de los coeficientes de cada palabra (ver {@link search.SpectralStoreWriter}), puede ser null.
+	 */
+	public PayloadAnalyzer(models.Query query, float doc, SpectralSink espectros) {
+		this(query, doc, espectros, null);
+	}
+	
+	/**
+	 * Constructor de la clase.
+	 * @param query consulta.
+	 * @param doc valor del documento.
+	 * @param espectros destino de los coeficientes de cada palabra (ver {@link search.SpectralStoreWriter}), puede ser null.
+	 * @param relacionados recolectores de los terminos relacionados a la query; cada thread que analiza
+	 *  documentos usa el suyo. Puede ser null.
+	 */
+	public PayloadAnalyzer(models.Query query, float doc, SpectralSink espectros,
+			RelatedTermsCollector.PorThread relacionados) {
 		this.query = query;
 		this.docValue = doc;
+		this.espectros = espectros;
+		this.relacionados = relacionados;
 	}
 	
 	/**
@@ -48,68 +70,21 @@ public class PayloadAnalyzer extends Analyzer{
 		Tokenizer source;
 		
 		/**
-		 * Se obtiene una copia del stream original (reader).
-		 */
-		StringBuilder builder = new StringBuilder();
-		char[] charBuffer = new char[2048];
-		try {
-			int i = 0;
-			while ((i = reader.read(charBuffer)) != -1)
-			{
-				builder.append(Arrays.copyOfRange(charBuffer, 0, i));
-			}
-		} catch (IOException e) {
-			e.printStackTrace();
-		}
-		
-		
-		/**
-		 * Se generan dos streams para duplicar el analisis.
+		 * El documento se analiza una sola vez, directamente desde el stream original (reader).
 		 */
-		Reader r1 = new StringReader(builder.toString());
-		Reader r2 = new StringReader(builder.toString());
-		
-		/**
-		 * En el primer analisis se obtienen las posiciones de las palabras en el documento en general.
-		 * Se obtiene una vision completa.
-		 */
-		source = new WhitespaceTokenizer(r1);
+		source = new WhitespaceTokenizer(reader);
 		filter = new LowerCaseFilter(source);
 		//filter = new StopFilter(filter, stopWords);
-		/**
-		 * CountTokenFilter realiza el conteo de palabras y sus posiciones en tiempo de indexacion,
-		 * para luego procesar esa informacion y almacenarla en un payload para cada token.
-		 */
-		filter = new CountTokenFilter(filter);
 		
 		/**
-		 * Se recorre todo el stream, para ejecutar el analizador.
-		 */
-		try {
-			filter.reset();
-			while (filter.incrementToken());
-			filter.close();
-		}
-		catch(Exception e)
-		{
-			e.printStackTrace();
-		}
-		
-		/**
-		 * Se obitiene la lista con el mapa de las palabras y sus ubicaciones en el documento.
-		 */
-		CountTokenFilter aux = (CountTokenFilter) filter;
-		HashMap<String, LinkedList<Integer>> lista = aux.getLista();
-		
-		/**
-		 * Luego se usa el 2do stream para realizar nuevamente la misma operacion,
-		 *  pero ahora con los datos ya obtenidos del analisis,
-		 *  permitiendo hacer un segundo analisis y almacenamiento en su respectivo payload 
+		 * CountTokenFilter realiza el conteo de palabras y sus posiciones en tiempo de indexacion,
+		 * guardando los tokens del documento para entregarlos luego.
+		 * PayloadFilter obtiene de el el mapa de las palabras y sus ubicaciones en el documento,
+		 * procesa esa informacion y la almacena en un payload para cada token.
 		 */
-		source = new WhitespaceTokenizer(r2);
-		filter = new LowerCaseFilter(source);
-		//filter = new StopFilter(filter, stopWords);
-		filter = new PayloadFilter(filter, lista, query, docValue);
+		CountTokenFilter conteo = new CountTokenFilter(filter);
+		filter = new PayloadFilter(conteo, query, docValue, espectros,
+				relacionados == null ? null : relacionados.get());
 		
 		return new TokenStreamComponents(source, filter);
 	}
@@ -0,0 +1,96 @@
+package search;
+
+import org.apache.lucene.util.BytesRef;
+
+/**
+ *
+ * Formato de los payloads de las palabras.
+ *
+ * <p>Cada payload tiene {@link #LARGO} bytes:
+ * <ul>
+ * <li>byte 0: version del formato ({@link #VERSION}).</li>
+ * <li>bytes 1 a 4: similitud de la palabra con la query (float, big-endian).</li>
+ * <li>byte 5: orden de la expansion de la palabra (ver {@link Constants#ORDEN_ADAPTATIVO}).</li>
+ * </ul>
+ * La palabra no se guarda, ya que el payload se lee desde las postings de la misma palabra.
+ *
+ * <p>La lectura se hace directamente sobre bytes/offset/length del {@link org.apache.lucene.util.BytesRef},
+ * sin copiar ni generar objetos.
+ *
+ * @author Javier Fuentes (j.fuentes06@ufromail.cl)
+ * @version 1.0
+ * @since 1.0
+ *
+ */
+public class PayloadCodec {
+
+	public static final byte VERSION = 1;
+	public static final int LARGO = 6;
+
+	/**
+	 * Constructor privado, la clase solo tiene metodos estaticos.
+	 */
+	private PayloadCodec() {}
+
+	/**
+	 * Escribe un payload.
+	 *
+	 * @param similitud similitud de la palabra.
+	 * @param orden orden de la expansion (0 a 255).
+	 * @param bytes destino, con al menos {@link #LARGO} bytes desde offset.
+	 * @param offset inicio del payload en bytes.
+	 * @return largo del payload.
+	 */
+	public static int codificar(float similitud, int orden, byte[] bytes, int offset)
+	{
+		int bits = Float.floatToIntBits(similitud);
+		bytes[offset] = VERSION;
+		bytes[offset + 1] = (byte)(bits >>> 24);
+		bytes[offset + 2] = (byte)(bits >>> 16);
+		bytes[offset + 3] = (byte)(bits >>> 8);
+		bytes[offset + 4] = (byte)bits;
+		bytes[offset + 5] = (byte)orden;
+		return LARGO;
+	}
+
+	/**
+	 * Lee la similitud de un payload.
+	 *
+	 * @param payload payload.
+	 * @return similitud
+	 */
+	public static float leerSimilitud(BytesRef payload)
+	{
+		validar(payload);
+		byte[] bytes = payload.bytes;
+		int i = payload.offset + 1;
+		int bits = (bytes[i] & 0xFF) << 24 | (bytes[i + 1] & 0xFF) << 16
+				| (bytes[i + 2] & 0xFF) << 8 | (bytes[i + 3] & 0xFF);
+		return Float.intBitsToFloat(bits);
+	}
+
+	/**
+	 * Lee el orden de la expansion de un payload.
+	 *
+	 * @param payload payload.
+	 * @return orden
+	 */
+	public static int leerOrden(BytesRef payload)
+	{
+		validar(payload);
+		return payload.bytes[payload.offset + 5] & 0xFF;
+	}
+
+	/**
+	 * Comprueba la version y el largo de un payload.
+	 *
+	 * @param payload payload.
+	 */
+	private static void validar(BytesRef payload)
+	{
+		if (payload.length < LARGO || payload.bytes[payload.offset] != VERSION)
+		{
+			throw new IllegalArgumentException("Formato de payload desconocido");
+		}
+	}
+}
@@ -1,25 +1,34 @@
 package search;
 
 import java.io.IOException;
-import java.nio.ByteBuffer;
 import java.util.Arrays;
-import java.util.Collection;
-import java.util.HashMap;
-import java.util.Iterator;
-import java.util.LinkedList;
 
+import exception.IllegalExpansionException;
+import math.AbstractExpansion;
 import math.Fourier;
+import math.Kernels;
+import math.PositionAccumulator;
 
 import org.apache.lucene.analysis.TokenFilter;
-import org.apache.lucene.analysis.TokenStream;
 import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
 import org.apache.lucene.analysis.tokenattributes.PayloadAttribute;
+import org.apache.lucene.util.ArrayUtil;
 import org.apache.lucene.util.BytesRef;
 
 /**
  * 
  * Clase que maneja el analisis de los tokens para ser almacenado en sus payloads.
  * 
+ * <p>Los arreglos de trabajo se reutilizan entre documentos y el payload de cada palabra
+ * (ver {@link search.PayloadCodec}) se codifica una sola vez en un arreglo de bytes comun. Para las
+ * repeticiones de una palabra no se genera ningun objeto: el payload del token es un
+ * {@link org.apache.lucene.util.BytesRef} reutilizado que apunta a ese arreglo (el indice copia los
+ * bytes del payload de cada token).
+ * 
+ * <p>Sin query (modo independiente, ver {@link Constants#INDICE_INDEPENDIENTE}) no se calculan similitudes
+ * ni payloads: solo se entregan los coeficientes de cada palabra a {@link search.SpectralSink}, y la similitud
+ * con la query se calcula al buscar (ver {@link search.SpectralQuery}).
+ * 
  * @author Javier Fuentes (j.fuentes06@ufromail.cl)
  * @version 1.0
  * @since 1.0
@@ -27,11 +36,70 @@ import org.apache.lucene.util.BytesRef;
  */
 public class PayloadFilter extends TokenFilter{
 
-	private HashMap<String, LinkedList<Integer>> lista;
 	private PayloadAttribute payload;
 	private CharTermAttribute term;
-	private Fourier fourier;
+	
+	/**
+	 * Expansion de las ubicaciones de las palabras (ver {@link Constants#EXPANSION}).
+	 */
+	private AbstractExpansion expansion;
 	private double[] queryCoef;
+	
+	/**
+	 * Coeficientes de todas las palabras del documento, una fila por palabra
+	 * (ver {@link math.AbstractExpansion#calculateCoeffs(int[], int[], double[])}).
+	 */
+	private double[] coeficientes;
+	
+	/**
+	 * Palabras del documento (ver {@link search.CountTokenFilter#getTerminos()}).
+	 * El identificador de cada palabra es su fila en la matriz de coeficientes.
+	 */
+	private TermHash terminos;
+	
+	/**
+	 * Memoria por palabra del documento: payload codificado, en la posicion id * {@link PayloadCodec#LARGO},
+	 * e indicador de si ya se calculo. Las repeticiones de una palabra solo cuestan una busqueda en {@link #terminos}.
+	 */
+	private byte[] bytesPayloads;
+	private boolean[] procesadas;
+	
+	/**
+	 * Payload entregado con cada token.
+	 */
+	private BytesRef payloadToken;
+	
+	/**
+	 * Largo de cada fila (orden maximo + 1).
+	 */
+	private int ancho;
+	
+	/**
+	 * Orden de la expansion de cada palabra (ver {@link Constants#ORDEN_ADAPTATIVO}).
+	 * Los coeficientes de ordenes mayores son 0.
+	 */
+	private int[] ordenes;
+	private int ordenQuery;
+	
+	/**
+	 * Suma de los cuadrados de los coeficientes de la query, calculada una vez por documento.
+	 */
+	private double normaQuery;
+	
+	/**
+	 * Palabras de la query (ver {@link search.PositionAnalyzer#palabras(String)}) y su identificador en
+	 * el documento, -1 si no aparece. Los coeficientes de la query son la suma de los de sus palabras
+	 * (la expansion de la suma de sus funciones indicadoras); si ninguna aparece no hay coeficientes
+	 * de la query y las similitudes son 0.
+	 */
+	private String[] palabrasQuery;
+	private int[] idsQuery;
+	private boolean hayQuery;
+	
+	/**
+	 * Terminos relacionados a la query (ver {@link search.RelatedTermsCollector}), puede ser null.
+	 */
+	private RelatedTermsCollector relacionados;
 	private models.Query query;
 	private float docValue;
 	
@@ -39,43 +107,155 @@ public class PayloadFilter extends TokenFilter{
 	 * Aumenta el tamaño del documento (al comienzo de este),
 	 *  para evitar los efectos que produce la funcion de Fourier en 
 	 *  los bordes del documento por la periodicidad de las funciones seno y coseno.
+	 *  Es 0 en expansiones no periodicas (ver {@link math.AbstractExpansion#isPeriodic()}).
 	 */
 	private int largo_extra_doc;
 
+	/**
+	 * Filtro que entrega los tokens y las ubicaciones de las palabras del documento.
+	 */
+	private CountTokenFilter conteo;
+	
+	/**
+	 * Ubicaciones de todas las palabras, para el calculo conjunto de los coeficientes
+	 * (ver {@link search.CountTokenFilter#getUbicaciones()}).
+	 */
+	private PositionAccumulator acumulador;
+	
+	/**
+	 * Destino opcional de los coeficientes de cada palabra (ver {@link search.SpectralStore}).
+	 */
+	private SpectralSink espectros;
+
 	/**
 	 * Constructor de la clase
-	 * <p> Permite inicializar el filtro, recibiendo la lista de palabras con sus ubicaciones por documento.
+	 * <p> Permite inicializar el filtro, recibiendo el filtro que obtiene la lista de palabras con sus ubicaciones por documento.
+	 * La lista se obtiene con el primer token (ver {@link search.CountTokenFilter}), por lo que el documento se analiza una sola vez.
 	 * @param input
-	 * @param lista
+	 * @param query consulta, null en el modo independiente.
+	 * @param docValue
+	 * @param espectros destino de los coeficientes de cada palabra, puede ser null.
+	 * @param relacionados recolector de los terminos relacionados a la query, puede ser null.
 	 */
-	protected PayloadFilter(TokenStream input, HashMap<String, LinkedList<Integer>> lista, models.Query query, float docValue) {
+	protected PayloadFilter(CountTokenFilter input, models.Query query, float docValue, SpectralSink espectros,
+			RelatedTermsCollector relacionados) {
 		super(input);
-		this.lista = lista;
+		this.conteo = input;
 		term = addAttribute(CharTermAttribute.class);
 		payload = addAttribute(PayloadAttribute.class);
-		fourier = new Fourier();
+		expansion = crearExpansion(Constants.EXPANSION, Constants.ORDEN_EXPANSION);
 		this.query = query;
 		this.docValue = docValue;
-		/**
-		 * Calculo del tamaño del doc.
-		 */
-		Collection<LinkedList<Integer>> col = lista.values();
-		Iterator<LinkedList<Integer>> iter = col.iterator();
-		int cont = 0;
-		while (iter.hasNext())
+		this.espectros = espectros;
+		this.relacionados = relacionados;
+		if (query == null && espectros == null)
+		{
+			throw new IllegalArgumentException("Sin query se necesita un destino para los coeficientes");
+		}
+		queryCoef = new double[Constants.ORDEN_EXPANSION + 1];
+		if (query != null)
 		{
-			cont += iter.next().size();
+			palabrasQuery = PositionAnalyzer.palabras(query.getQuery());
+			idsQuery = new int[palabrasQuery.length];
 		}
+		procesadas = new boolean[64];
+		ordenes = new int[64];
+		bytesPayloads = new byte[64 * PayloadCodec.LARGO];
+		payloadToken = new BytesRef(bytesPayloads, 0, PayloadCodec.LARGO);
+	}
+	
+	/**
+	 * Crea y configura una expansion.
+	 * 
+	 * @param nombre nombre de la expansion (ver {@link math.AbstractExpansion#createExpansion(String)}).
+	 * @param orden orden maximo.
+	 * @return expansion.
+	 */
+	static AbstractExpansion crearExpansion(String nombre, int orden)
+	{
+		AbstractExpansion expansion;
+		try
+		{
+			expansion = AbstractExpansion.createExpansion(nombre);
+		}
+		catch (IllegalExpansionException e)
+		{
+			throw new RuntimeException(e);
+		}
+		expansion.setMaxOrder(orden);
+		if (expansion instanceof Fourier)
+		{
+			((Fourier)expansion).setHighOrder(orden >= Fourier.HIGH_ORDER);
+			((Fourier)expansion).setBinsPerOrder(Constants.INTERVALOS_POR_ORDEN);
+		}
+		return expansion;
+	}
+	
+	/**
+	 * Calcula los coeficientes de todas las palabras del documento.
+	 * 
+	 * <p>Se llama con el primer token, cuando las ubicaciones de {@link search.CountTokenFilter} ya estan completas.
+	 */
+	private void inicializar()
+	{
+		this.terminos = conteo.getTerminos();
+		this.acumulador = conteo.getUbicaciones();
 		
 		/**
-		 * Calcula el largo extra del documento.
+		 * Tamaño del doc.
 		 */
-		largo_extra_doc = (int)(cont*Constants.PORCENTAJE_LARGO_EXTRA_DOCUMENTO);
+		int cont = acumulador.size();
 		
-		fourier.setScale(cont + largo_extra_doc);
-		fourier.setMaxOrder(6);
-		this.queryCoef = this.getCoefs(query.getQuery());
+		/**
+		 * Calcula el largo extra del documento, necesario solo en expansiones periodicas.
+		 */
+		largo_extra_doc = expansion.isPeriodic() ? (int)(cont*Constants.PORCENTAJE_LARGO_EXTRA_DOCUMENTO) : 0;
+		
+		/**
+		 * Calculo de los coeficientes de todas las palabras en una sola pasada.
+		 */
+		this.calcularCoeficientes(cont + largo_extra_doc);
+		
+		/**
+		 * Memoria de payloads vacia.
+		 */
+		if (procesadas.length < terminos.size())
+		{
+			procesadas = new boolean[ArrayUtil.oversize(terminos.size(), 1)];
+			bytesPayloads = new byte[procesadas.length * PayloadCodec.LARGO];
+		}
+		Arrays.fill(procesadas, 0, terminos.size(), false);
+		payloadToken.bytes = bytesPayloads;
+		if (query == null) return;
 		
+		/**
+		 * Coeficientes de la query: suma de los coeficientes de sus palabras en el documento.
+		 */
+		Arrays.fill(queryCoef, 0);
+		this.ordenQuery = 0;
+		this.hayQuery = false;
+		for (int q = 0; q < palabrasQuery.length; q++)
+		{
+			int id = this.terminos.find(palabrasQuery[q]);
+			idsQuery[q] = id;
+			if (id >= 0)
+			{
+				for (int j = 0; j <= ordenes[id]; j++)
+				{
+					queryCoef[j] += coeficientes[id * ancho + j];
+				}
+				this.ordenQuery = Math.max(ordenQuery, ordenes[id]);
+				this.hayQuery = true;
+			}
+		}
+		this.normaQuery = Kernels.sumOfSquares(queryCoef, 0, ordenQuery + 1);
+	}
+	
+	@Override
+	public void reset() throws IOException
+	{
+		super.reset();
+		terminos = null;
 	}
 	
 	/**
@@ -84,18 +264,54 @@ public class PayloadFilter extends TokenFilter{
 	@Override
 	public boolean incrementToken() throws IOException {
 		if (!input.incrementToken()) return false;
+		if (terminos == null) this.inicializar();
+		
+		/**
+		 * Busqueda del token actual, directamente sobre el buffer del termino.
+		 */
+		int id = terminos.find(term.buffer(), term.length());
+		
+		/**
+		 * La similitud y el payload se calculan solo en la primera aparicion de cada palabra.
+		 */
+		if (!procesadas[id])
+		{
+			this.procesarPalabra(id);
+		}
 		
 		/**
-		 * String del token actual.
+		 * Formato de almacenamiento en payload.
 		 */
-		StringBuilder builder = new StringBuilder();
-		builder.append(Arrays.copyOfRange(term.buffer(), 0, term.length()));
+		if (query == null) return true;
+		payloadToken.bytes = bytesPayloads;
+		payloadToken.offset = id * PayloadCodec.LARGO;
+		payload.setPayload(payloadToken);
+		
+		return true;
+	}
+	
+	/**
+	 * Calcula la similitud y el payload de una palabra del documento.
+	 * 
+	 * <p>Se llama en la primera aparicion de la palabra.
+	 * 
+	 * @param id identificador de la palabra en {@link #terminos}
+	 * @throws IOException
+	 */
+	private void procesarPalabra(int id) throws IOException
+	{
+		if (query == null)
+		{
+			espectros.agregar(term.buffer(), term.length(), coeficientes, id * ancho, ordenes[id] + 1);
+			procesadas[id] = true;
+			return;
+		}
 		
 		/**
 		 * Calculo similitud.
 		 */
-		double[] coefs = this.getCoefs(builder.toString());
-		double similitud = this.calculoSimilitud(queryCoef, coefs);
+		double similitud = hayQuery
+				? this.calculoSimilitud(queryCoef, normaQuery, coeficientes, id * ancho, ordenes[id]) : 0;
 		
 		
 		
@@ -104,81 +320,61 @@ public class PayloadFilter extends TokenFilter{
 		 */
 		similitud = Math.abs(similitud);
 		similitud = similitud*docValue;
-		System.out.print(builder.toString()+"|"+similitud + ", ");
+		
 		/**
-		 * Generacion de los terminos mas cercanos,
-		 * Almacenados dentro de la query.
+		 * Generacion de los terminos mas cercanos (el token actual es la palabra).
 		 */
-		if (!builder.toString().equals(query.getQuery()))
+		if (relacionados != null && similitud > 0 && !this.esPalabraQuery(id))
 		{
-			int min = 0;
-			float mindiff = 5.0F;
-			for (int i=0; i < query.getTerms().length; i++)
-			{
-				float diff = Math.abs(query.getValues()[i] - (float)similitud);
-				if (diff < mindiff)
-					continue;
-				
-				if (query.getValues()[i] < (float)similitud)
-				{
-					min = i;
-				}
-				
-			}
-			if (similitud > 0){
-				query.getValues()[min] = (float)similitud;
-				query.getTerms()[min] = builder.toString();
-			}
+			relacionados.agregar(term.buffer(), term.length(), (float)similitud);
 		}
 		
 		/**
-		 * Conversion a bytes
+		 * Conversion a bytes (ver {@link PayloadCodec}).
 		 */
-		byte[] bytesSimilitud = ByteBuffer.allocate(8).putDouble(similitud).array();
-		byte[] stringSize = ByteBuffer.allocate(4).putInt(builder.toString().length()).array();
-		byte[] string = builder.toString().getBytes();
-		
-		
-		byte[] bytes = new byte[bytesSimilitud.length + stringSize.length + string.length];
-		
-		System.arraycopy(bytesSimilitud, 0, bytes, 0, 8);
-		System.arraycopy(stringSize, 0, bytes, 8, 4);
-		System.arraycopy(string, 0, bytes, 12, string.length);
-
+		PayloadCodec.codificar((float)similitud, ordenes[id], bytesPayloads, id * PayloadCodec.LARGO);
 		
 		/**
-		 * Formato de almacenamiento en payload.
+		 * Coeficientes de la palabra, una sola vez por documento (el token actual es la palabra).
 		 */
-		BytesRef br = new BytesRef(bytes);
-		payload.setPayload(br);
-		
-		return true;
+		if (espectros != null)
+		{
+			espectros.agregar(term.buffer(), term.length(), coeficientes, id * ancho, ordenes[id] + 1);
+		}
+		procesadas[id] = true;
+	}
+	
+	/**
+	 * @param id identificador de una palabra del documento.
+	 * @return true si la palabra es una de las palabras de la query.
+	 */
+	private boolean esPalabraQuery(int id)
+	{
+		for (int q = 0; q < idsQuery.length; q++)
+		{
+			if (idsQuery[q] == id) return true;
+		}
+		return false;
 	}
 	
 	/**
 	 * 
 	 * Calculo de similitud
-	 * @param c1 coeficientes 
-	 * @param c2 coeficientes 
+	 * <p>Los coeficientes sobre el orden de cada palabra son 0, por lo que solo se recorren
+	 * los primeros orden + 1 coeficientes de la palabra; el producto y la norma de la palabra se
+	 * calculan en una sola pasada. La norma de la query se calcula una vez por documento.
+	 * @param c1 coeficientes de la query
+	 * @param normaC1 suma de los cuadrados de c1
+	 * @param c2 matriz de coeficientes 
+	 * @param fila inicio de los coeficientes en c2
+	 * @param orden2 orden de la fila de c2
 	 * @return double similitud
 	 */
-	private double calculoSimilitud(double[] c1, double[] c2)
+	private double calculoSimilitud(double[] c1, double normaC1, double[] c2, int fila, int orden2)
 	{
-		if (c1.length == c2.length)
+		if (fila + c1.length <= c2.length)
 		{
-			double out = 0.0;
-			double auxC1 = 0.0;
-			double auxC2 = 0.0;
-			for (int i=0; i < c2.length; i++)
-			{
-				out += c1[i]*c2[i];
-				auxC1 += c1[i]*c1[i];
-				auxC2 += c2[i]*c2[i];
-			}
-			
-			out = out / (auxC1*auxC2);
-			
-			return out;
+			return Kernels.dotOverSumOfSquares(c1, 0, c2, fila, orden2 + 1) / normaC1;
 		}
 		else
 		{
@@ -188,33 +384,44 @@ public class PayloadFilter extends TokenFilter{
 	
 	/**
 	 * 
-	 * Obtencion de los coefs. 
+	 * Obtencion de los coefs de todas las palabras del documento.
+	 * 
+	 * <p>Las ubicaciones de todas las palabras ya estan en un {@link math.PositionAccumulator}
+	 * (ver {@link search.CountTokenFilter}) y los coeficientes se calculan en una sola llamada,
+	 * sin generar arreglos por palabra. El largo extra del documento se aplica al final.
 	 * 
-	 * @param query
-	 * @return coeficientes
+	 * @param largo largo del documento, incluyendo el largo extra
 	 */
-	private double[] getCoefs(String query)
+	private void calcularCoeficientes(int largo)
 	{
+		ancho = expansion.getMaxOrder() + 1;
+		
 		/**
-		 * Obtencion de las ubicaciones de la palabra en el documento
+		 * Calculo de los coeficientes, desplazados por el largo extra.
+		 * En expansiones no periodicas la palabra en la ubicacion p ocupa [p, p + 1], dentro de [0, largo].
 		 */
-		Integer[] wordPositionsInteger = this.lista.get(query).toArray(new Integer[0]);
+		int desplazamiento = expansion.isPeriodic() ? largo_extra_doc : 1;
+		coeficientes = acumulador.finish(expansion, largo, desplazamiento, coeficientes);
 		
 		/**
-		 * Casting de Integer[] a int[]
+		 * Orden de cada palabra; en modo adaptativo se anulan los coeficientes sobre el orden elegido.
 		 */
-		int[] wordPositions = new int[wordPositionsInteger.length];
-		for (int i=0; i < wordPositions.length; i++)
+		if (ordenes.length < terminos.size())
 		{
-			wordPositions[i] = (int)wordPositionsInteger[i] + largo_extra_doc;
+			ordenes = new int[ArrayUtil.oversize(terminos.size(), 4)];
+		}
+		for (int t = 0; t < terminos.size(); t++)
+		{
+			if (Constants.ORDEN_ADAPTATIVO)
+			{
+				ordenes[t] = expansion.selectOrder(coeficientes, t * ancho, Constants.UMBRAL_ENERGIA,
+						Constants.ORDEN_MINIMO);
+				Arrays.fill(coeficientes, t * ancho + ordenes[t] + 1, (t + 1) * ancho, 0);
+			}
+			else
+			{
+				ordenes[t] = ancho - 1;
+			}
 		}
-		
-		/**
-		 * Calculo de los coeficientes.
-		 */
-		this.fourier.setWordPositions(wordPositions);
-		
-		return fourier.calculateCoeffs();
-		
 	}
 }
@@ -1,74 +1,192 @@
 package search;
 
-import java.nio.ByteBuffer;
-import java.util.Arrays;
+import java.io.IOException;
 
+import org.apache.lucene.index.AtomicReaderContext;
+import org.apache.lucene.index.FieldInvertState;
+import org.apache.lucene.search.CollectionStatistics;
+import org.apache.lucene.search.Explanation;
+import org.apache.lucene.search.TermStatistics;
 import org.apache.lucene.search.similarities.DefaultSimilarity;
+import org.apache.lucene.search.similarities.Similarity;
 import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.BytesRefHash;
 
 
 /**
- * 
+ *
  * Clase que maneja el boosting a las palabras con payload.
- * 
- * 
+ *
+ *
  * <p>Permite el analisis de sus respectivos payloads, para las palabras relevantes, dentro del documento.
- * 
+ *
+ * <p>Todo el calculo del score se delega en {@link org.apache.lucene.search.similarities.DefaultSimilarity},
+ * salvo el factor de cada payload: la similitud guardada en el payload (ver {@link search.PayloadCodec}),
+ * multiplicada por el peso del termino en la query. Los pesos se leen de la expansion de la query
+ * ({@link models.Query#getExpansion()}) al crear la instancia y quedan en una tabla indexada por los bytes de cada
+ * termino; las palabras de la query tienen peso 1. El peso se busca una sola vez por termino consultado
+ * (en {@link #computeWeight(float, CollectionStatistics, TermStatistics...)}), por lo que el factor de cada
+ * payload solo lee el payload en su lugar, sin generar objetos.
+ *
  * @author Javier Fuentes (j.fuentes06@ufromail.cl)
  * @version 1.0
  * @since 1.0
  *
  */
-public class PayloadSimilarity extends DefaultSimilarity{
-	private models.Query query;
-	
+public class PayloadSimilarity extends Similarity{
+
+	private final DefaultSimilarity base = new DefaultSimilarity();
+
+	/**
+	 * Tabla de pesos: el termino con identificador id en terminos tiene peso pesos[id].
+	 */
+	private final BytesRefHash terminos = new BytesRefHash();
+	private float[] pesos = new float[16];
+
 	/**
 	 * Constructor de la clase.
-	 * @param query
+	 * @param query consulta, con sus terminos relacionados y sus pesos.
 	 */
 	public PayloadSimilarity(models.Query query) {
-		this.query = query;
+		models.Expansion expansion = query.getExpansion();
+		for (int i = 0; i < expansion.size(); i++) {
+			this.agregar(new BytesRef(expansion.getTerm(i)), expansion.getValue(i));
+		}
+		if (query.getQuery() != null) {
+			for (String palabra : PositionAnalyzer.palabras(query.getQuery())) {
+				this.agregar(new BytesRef(palabra), 1.0F);
+			}
+		}
 	}
-	
-	
+
 	/**
-	 * Metodo que calcula el score para un payload.
-	 * 
-	 * @return score para un payload
+	 * Agrega o reemplaza el peso de un termino.
 	 */
-	@Override
-	public float scorePayload(int doc, int start, int end, BytesRef payload) {
-		
-		/**
-		 * Obtencion de los bytes separando por trozos, se convierten a enteros (puede ser cualquier tipo de dato).
-		 */
-		
-		
-		byte[] bytes = Arrays.copyOfRange(payload.bytes, 0, 8);
-		double similitud = ByteBuffer.wrap(bytes).getDouble();
-		
-		bytes = Arrays.copyOfRange(payload.bytes, 8, 12);
-		int stringSize = ByteBuffer.wrap(bytes).getInt();
-		
-		bytes = Arrays.copyOfRange(payload.bytes, 12, 12 + stringSize);
-		StringBuilder builder = new StringBuilder();
-		for (int i=0; i < stringSize; i++)
-		{
-			builder.append((char)(bytes[i]));
+	private void agregar(BytesRef termino, float peso) {
+		int id = terminos.add(termino);
+		if (id < 0) {
+			id = -id - 1;
 		}
-		
-		int increment = 0;
-		
-		if ("javier".equals(builder.toString()))
-		{
-			increment = 1;
+		if (id >= pesos.length) {
+			pesos = java.util.Arrays.copyOf(pesos, 2 * pesos.length);
 		}
-		
+		pesos[id] = peso;
+	}
+
+	/**
+	 * Peso de un termino en la query.
+	 *
+	 * @param termino termino, en UTF-8.
+	 * @return peso, 1 si el termino no esta en la query.
+	 */
+	public float getPeso(BytesRef termino) {
+		int id = terminos.find(termino);
+		return id < 0 ? 1.0F : pesos[id];
+	}
+
+	@Override
+	public float coord(int overlap, int maxOverlap) {
+		return base.coord(overlap, maxOverlap);
+	}
+
+	@Override
+	public float queryNorm(float valueForNormalization) {
+		return base.queryNorm(valueForNormalization);
+	}
+
+	@Override
+	public long computeNorm(FieldInvertState state) {
+		return base.computeNorm(state);
+	}
+
+	/**
+	 * Peso de DefaultSimilarity junto al peso del termino en la query (1 para frases).
+	 */
+	@Override
+	public SimWeight computeWeight(float queryBoost, CollectionStatistics collectionStats,
+			TermStatistics... termStats) {
+		float peso = termStats.length == 1 ? this.getPeso(termStats[0].term()) : 1.0F;
+		return new PesoPayload(base.computeWeight(queryBoost, collectionStats, termStats), peso);
+	}
+
+	@Override
+	public SimScorer simScorer(SimWeight weight, AtomicReaderContext context) throws IOException {
+		PesoPayload peso = (PesoPayload)weight;
+		return new ScorerPayload(base.simScorer(peso.base, context), peso.peso);
+	}
+
+	/**
+	 * Metodo que calcula el score para un payload.
+	 *
+	 * <p>El payload se lee sin copiarlo (ver {@link search.PayloadCodec}). Como pertenece a las postings
+	 * del termino consultado, la similitud guardada es directamente el incremento del score.
+	 *
+	 * @param peso peso del termino en la query.
+	 * @param payload payload, puede ser null.
+	 * @return score para un payload, 1 si no hay payload.
+	 */
+	public static float scorePayload(float peso, BytesRef payload) {
+
 		/**
 		 * Valor retornado incrementa el boosting de un documento.
 		 */
-		//uso de las querys para obtener los pesos de los terminos relevantes.
-		System.out.println(similitud);
-		return (float)((similitud)*increment);
+		if (payload == null) return 1.0F;
+		return peso * PayloadCodec.leerSimilitud(payload);
+	}
+
+	/**
+	 * Peso de un termino consultado.
+	 */
+	private static class PesoPayload extends SimWeight {
+		private final SimWeight base;
+		private final float peso;
+
+		PesoPayload(SimWeight base, float peso) {
+			this.base = base;
+			this.peso = peso;
+		}
+
+		@Override
+		public float getValueForNormalization() {
+			return base.getValueForNormalization();
+		}
+
+		@Override
+		public void normalize(float queryNorm, float topLevelBoost) {
+			base.normalize(queryNorm, topLevelBoost);
+		}
+	}
+
+	/**
+	 * Score de un termino consultado en un segmento.
+	 */
+	private static class ScorerPayload extends SimScorer {
+		private final SimScorer base;
+		private final float peso;
+
+		ScorerPayload(SimScorer base, float peso) {
+			this.base = base;
+			this.peso = peso;
+		}
+
+		@Override
+		public float score(int doc, float freq) {
+			return base.score(doc, freq);
+		}
+
+		@Override
+		public float computeSlopFactor(int distance) {
+			return base.computeSlopFactor(distance);
+		}
+
+		@Override
+		public float computePayloadFactor(int doc, int start, int end, BytesRef payload) {
+			return scorePayload(peso, payload);
+		}
+
+		@Override
+		public Explanation explain(int doc, Explanation freq) {
+			return base.explain(doc, freq);
+		}
 	}
 }
@@ -0,0 +1,117 @@
+package search;
+
+import java.io.Reader;
+import java.util.LinkedHashSet;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.TokenFilter;
+import org.apache.lucene.analysis.Tokenizer;
+import org.apache.lucene.analysis.core.LowerCaseFilter;
+import org.apache.lucene.analysis.core.WhitespaceTokenizer;
+
+/**
+ *
+ * Analisis simple de los documentos, sin calculo de coeficientes.
+ *
+ * <p>Genera los mismos tokens y posiciones que {@link search.PayloadAnalyzer}, pero sin payloads: las
+ * posiciones quedan en las postings del indice y los coeficientes se calculan al buscar
+ * (ver {@link search.PostingsSpectra}). Una instancia sirve para todos los documentos.
+ *
+ * @author Javier Fuentes (j.fuentes06@ufromail.cl)
+ * @version 1.0
+ * @since 1.0
+ *
+ */
+public class PositionAnalyzer extends Analyzer {
+
+	/**
+	 * Largo maximo de un token de {@link org.apache.lucene.analysis.core.WhitespaceTokenizer}.
+	 */
+	private static final int LARGO_MAXIMO_TOKEN = 255;
+
+	@Override
+	protected TokenStreamComponents createComponents(String field, Reader reader)
+	{
+		Tokenizer source = new WhitespaceTokenizer(reader);
+		TokenFilter filter = new LowerCaseFilter(source);
+		return new TokenStreamComponents(source, filter);
+	}
+
+	/**
+	 * Cuenta los tokens de un texto, como {@link org.apache.lucene.analysis.core.WhitespaceTokenizer}
+	 * (los tokens de mas de 255 caracteres se dividen), sin analizarlo.
+	 *
+	 * @param texto texto del documento.
+	 * @return numero de tokens, el largo del documento.
+	 */
+	public static int contarPalabras(String texto)
+	{
+		int palabras = 0;
+		int largo = 0;
+		for (int i = 0; i < texto.length(); )
+		{
+			int c = texto.codePointAt(i);
+			int caracteres = Character.charCount(c);
+			i += caracteres;
+			if (!Character.isWhitespace(c))
+			{
+				largo += caracteres;
+				if (largo >= LARGO_MAXIMO_TOKEN)
+				{
+					palabras++;
+					largo = 0;
+				}
+			}
+			else if (largo > 0)
+			{
+				palabras++;
+				largo = 0;
+			}
+		}
+		return largo > 0 ? palabras + 1 : palabras;
+	}
+
+	/**
+	 * Separa un texto en palabras como este analizador (tokens de
+	 * {@link org.apache.lucene.analysis.core.WhitespaceTokenizer} en minusculas), sin repetidas.
+	 *
+	 * <p>Se usa para las palabras de una query de varias palabras.
+	 *
+	 * @param texto texto, por ejemplo la query.
+	 * @return palabras distintas, en el orden en que aparecen.
+	 */
+	public static String[] palabras(String texto)
+	{
+		LinkedHashSet<String> palabras = new LinkedHashSet<>();
+		StringBuilder palabra = new StringBuilder();
+		int largo = 0;
+		for (int i = 0; i < texto.length(); )
+		{
+			int c = texto.codePointAt(i);
+			int caracteres = Character.charCount(c);
+			i += caracteres;
+			if (!Character.isWhitespace(c))
+			{
+				palabra.appendCodePoint(Character.toLowerCase(c));
+				largo += caracteres;
+				if (largo >= LARGO_MAXIMO_TOKEN)
+				{
+					palabras.add(palabra.toString());
+					palabra.setLength(0);
+					largo = 0;
+				}
+			}
+			else if (largo > 0)
+			{
+				palabras.add(palabra.toString());
+				palabra.setLength(0);
+				largo = 0;
+			}
+		}
+		if (largo > 0)
+		{
+			palabras.add(palabra.toString());
+		}
+		return palabras.toArray(new String[palabras.size()]);
+	}
+}
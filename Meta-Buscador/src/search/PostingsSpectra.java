@@ -0,0 +1,360 @@
+package search;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import math.AbstractExpansion;
+
+import org.apache.lucene.index.AtomicReader;
+import org.apache.lucene.index.AtomicReaderContext;
+import org.apache.lucene.index.DocsAndPositionsEnum;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.NumericDocValues;
+import org.apache.lucene.index.Terms;
+import org.apache.lucene.index.TermsEnum;
+import org.apache.lucene.util.ArrayUtil;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.BytesRefHash;
+
+/**
+ *
+ * Coeficientes de cada (documento, palabra) calculados al buscar, desde las posiciones de las postings.
+ *
+ * <p>Los coeficientes se calculan solo para los pares que toca una consulta, con las posiciones leidas
+ * con un {@link org.apache.lucene.index.DocsAndPositionsEnum} y el largo del documento guardado como
+ * docvalue ({@link Constants#LARGO}). El largo extra, el desplazamiento y el orden de cada palabra son los
+ * mismos de {@link search.PayloadFilter}, por lo que con la misma expansion los coeficientes coinciden con los
+ * calculados al indexar. La expansion y su orden se eligen al crear la instancia: cambiarlos no requiere
+ * volver a indexar.
+ *
+ * <p>Cada segmento (reader) tiene un cache LRU de capacidad fija, guardado en arreglos primitivos, que se
+ * libera al cerrar el reader. El cache de un segmento es compartido por los threads (sus metodos estan
+ * sincronizados). Una lectura que esta en el cache no genera objetos.
+ *
+ * @author Javier Fuentes (j.fuentes06@ufromail.cl)
+ * @version 1.0
+ * @since 1.0
+ *
+ */
+public class PostingsSpectra implements SpectralSource {
+
+	private final String campo;
+	private final String nombreExpansion;
+	private final int orden;
+	private final int capacidad;
+
+	/**
+	 * Cache de cada reader, hasta que se cierra.
+	 */
+	private final Map<IndexReader, Cache> caches = new HashMap<>();
+	private final IndexReader.ReaderClosedListener liberar = new IndexReader.ReaderClosedListener()
+	{
+		@Override
+		public void onClose(IndexReader reader)
+		{
+			synchronized (caches)
+			{
+				caches.remove(reader);
+			}
+		}
+	};
+
+	/**
+	 * Constructor de la clase.
+	 *
+	 * @param campo campo del indice con las posiciones.
+	 * @param nombreExpansion expansion (ver {@link math.AbstractExpansion#createExpansion(String)}).
+	 * @param orden orden maximo de la expansion.
+	 * @param capacidad numero de pares (documento, palabra) guardados por segmento.
+	 */
+	public PostingsSpectra(String campo, String nombreExpansion, int orden, int capacidad)
+	{
+		if (capacidad <= 0)
+		{
+			throw new IllegalArgumentException("Capacidad invalida: " + capacidad);
+		}
+		this.campo = campo;
+		this.nombreExpansion = nombreExpansion;
+		this.orden = orden;
+		this.capacidad = capacidad;
+
+		/**
+		 * Falla al crear la instancia si la expansion no existe.
+		 */
+		PayloadFilter.crearExpansion(nombreExpansion, orden);
+	}
+
+	/**
+	 * Los coeficientes no se calculan al indexar, por lo que no hay cotas.
+	 */
+	@Override
+	public double minimoCuadrados(BytesRef termino)
+	{
+		return 0;
+	}
+
+	/**
+	 * Lector del segmento, con el cache del reader.
+	 */
+	@Override
+	public Lector lector(AtomicReaderContext context) throws IOException
+	{
+		AtomicReader reader = context.reader();
+		synchronized (caches)
+		{
+			Cache cache = caches.get(reader);
+			if (cache == null)
+			{
+				cache = new Cache(reader);
+				caches.put(reader, cache);
+				reader.addReaderClosedListener(liberar);
+			}
+			return cache;
+		}
+	}
+
+	/**
+	 * Libera los caches de todos los readers (tambien se liberan al cerrar cada reader).
+	 */
+	@Override
+	public void close()
+	{
+		synchronized (caches)
+		{
+			caches.clear();
+		}
+	}
+
+	/**
+	 * Cache LRU de un segmento.
+	 *
+	 * <p>Cada entrada es un par (documento, palabra), con la palabra como identificador en {@link #terminos}.
+	 * Las entradas estan en una tabla hash con listas enlazadas ({@link #tabla}, {@link #cadena}) y en una lista
+	 * doblemente enlazada por uso ({@link #anterior}, {@link #siguiente}). Tambien se guardan los pares en que
+	 * la palabra no aparece (dimension -1).
+	 */
+	private final class Cache implements Lector
+	{
+		private final AbstractExpansion expansion;
+		private final int ancho;
+		private final NumericDocValues largos;
+		private final TermsEnum te;
+		private DocsAndPositionsEnum postings;
+
+		private final BytesRefHash terminos = new BytesRefHash();
+		private final long[] claves;
+		private final int[] dimensiones;
+		private final double[] coeficientes;
+		private final int[] anterior;
+		private final int[] siguiente;
+		private final int[] tabla;
+		private final int[] cadena;
+		private int primera = -1;
+		private int ultima = -1;
+		private int usadas;
+
+		/**
+		 * Arreglos de trabajo del calculo.
+		 */
+		private int[] ubicaciones = new int[16];
+		private final int[] offsets = new int[2];
+		private double[] fila;
+
+		Cache(AtomicReader reader) throws IOException
+		{
+			this.expansion = PayloadFilter.crearExpansion(nombreExpansion, orden);
+			this.ancho = orden + 1;
+			this.largos = reader.getNumericDocValues(Constants.LARGO);
+			if (largos == null)
+			{
+				throw new IllegalStateException("El indice no tiene docvalues de " + Constants.LARGO);
+			}
+			Terms terms = reader.terms(campo);
+			this.te = terms == null ? null : terms.iterator(null);
+
+			this.claves = new long[capacidad];
+			this.dimensiones = new int[capacidad];
+			this.coeficientes = new double[capacidad * ancho];
+			this.anterior = new int[capacidad];
+			this.siguiente = new int[capacidad];
+			this.tabla = new int[Integer.highestOneBit(capacidad * 2 - 1) * 2];
+			this.cadena = new int[capacidad];
+			Arrays.fill(tabla, -1);
+			this.fila = new double[ancho];
+		}
+
+		@Override
+		public synchronized int leer(int doc, BytesRef termino, double[] destino, int offset) throws IOException
+		{
+			if (te == null) return -1;
+			int id = terminos.find(termino);
+			if (id < 0)
+			{
+				/**
+				 * Las palabras solo se agregan; si son demasiadas se vacia el cache.
+				 */
+				if (terminos.size() >= 4 * capacidad)
+				{
+					this.vaciar();
+				}
+				id = terminos.add(termino);
+			}
+			long clave = ((long)doc << 32) | id;
+
+			int entrada = this.buscar(clave);
+			if (entrada >= 0)
+			{
+				this.alFrente(entrada);
+			}
+			else
+			{
+				entrada = this.nuevaEntrada(clave);
+				dimensiones[entrada] = this.calcular(doc, termino, entrada * ancho);
+			}
+
+			int dimension = dimensiones[entrada];
+			if (dimension > 0 && destino.length - offset >= dimension)
+			{
+				System.arraycopy(coeficientes, entrada * ancho, destino, offset, dimension);
+			}
+			return dimension;
+		}
+
+		/**
+		 * Calcula los coeficientes de una palabra de un documento.
+		 *
+		 * @param doc documento.
+		 * @param termino palabra.
+		 * @param inicio inicio de los coeficientes en {@link #coeficientes}.
+		 * @return numero de coeficientes, -1 si la palabra no esta en el documento.
+		 * @throws IOException
+		 */
+		private int calcular(int doc, BytesRef termino, int inicio) throws IOException
+		{
+			if (!te.seekExact(termino)) return -1;
+			postings = te.docsAndPositions(null, postings, DocsAndPositionsEnum.FLAG_NONE);
+			if (postings == null)
+			{
+				throw new IllegalStateException("El campo " + campo + " no tiene posiciones");
+			}
+			if (postings.advance(doc) != doc) return -1;
+
+			/**
+			 * Largo extra, desplazamiento y orden como en PayloadFilter.
+			 */
+			int frecuencia = postings.freq();
+			int largo = (int)largos.get(doc);
+			int extra = expansion.isPeriodic() ? (int)(largo*Constants.PORCENTAJE_LARGO_EXTRA_DOCUMENTO) : 0;
+			int desplazamiento = expansion.isPeriodic() ? extra : 1;
+			if (ubicaciones.length < frecuencia)
+			{
+				ubicaciones = new int[ArrayUtil.oversize(frecuencia, 4)];
+			}
+			for (int i = 0; i < frecuencia; i++)
+			{
+				ubicaciones[i] = postings.nextPosition() + desplazamiento;
+			}
+			offsets[1] = frecuencia;
+			expansion.setScale(largo + extra);
+			fila = expansion.calculateCoeffs(ubicaciones, offsets, fila);
+
+			int ordenPalabra = ancho - 1;
+			if (Constants.ORDEN_ADAPTATIVO)
+			{
+				ordenPalabra = expansion.selectOrder(fila, 0, Constants.UMBRAL_ENERGIA, Constants.ORDEN_MINIMO);
+			}
+			System.arraycopy(fila, 0, coeficientes, inicio, ordenPalabra + 1);
+			return ordenPalabra + 1;
+		}
+
+		private int casilla(long clave)
+		{
+			return (int)((clave * 0x9E3779B97F4A7C15L) >>> 32) & (tabla.length - 1);
+		}
+
+		private int buscar(long clave)
+		{
+			for (int e = tabla[casilla(clave)]; e >= 0; e = cadena[e])
+			{
+				if (claves[e] == clave) return e;
+			}
+			return -1;
+		}
+
+		/**
+		 * Entrada para una clave nueva: una libre o la usada hace mas tiempo.
+		 */
+		private int nuevaEntrada(long clave)
+		{
+			int entrada;
+			if (usadas < capacidad)
+			{
+				entrada = usadas++;
+			}
+			else
+			{
+				entrada = ultima;
+				this.quitarDeTabla(entrada);
+				this.desenlazar(entrada);
+			}
+			claves[entrada] = clave;
+			int c = casilla(clave);
+			cadena[entrada] = tabla[c];
+			tabla[c] = entrada;
+			this.enlazarAlFrente(entrada);
+			return entrada;
+		}
+
+		private void quitarDeTabla(int entrada)
+		{
+			int c = casilla(claves[entrada]);
+			if (tabla[c] == entrada)
+			{
+				tabla[c] = cadena[entrada];
+				return;
+			}
+			int e = tabla[c];
+			while (cadena[e] != entrada)
+			{
+				e = cadena[e];
+			}
+			cadena[e] = cadena[entrada];
+		}
+
+		private void alFrente(int entrada)
+		{
+			if (entrada == primera) return;
+			this.desenlazar(entrada);
+			this.enlazarAlFrente(entrada);
+		}
+
+		private void desenlazar(int entrada)
+		{
+			if (anterior[entrada] >= 0) siguiente[anterior[entrada]] = siguiente[entrada];
+			else primera = siguiente[entrada];
+			if (siguiente[entrada] >= 0) anterior[siguiente[entrada]] = anterior[entrada];
+			else ultima = anterior[entrada];
+		}
+
+		private void enlazarAlFrente(int entrada)
+		{
+			anterior[entrada] = -1;
+			siguiente[entrada] = primera;
+			if (primera >= 0) anterior[primera] = entrada;
+			primera = entrada;
+			if (ultima < 0) ultima = entrada;
+		}
+
+		private void vaciar()
+		{
+			terminos.clear();
+			terminos.reinit();
+			Arrays.fill(tabla, -1);
+			primera = -1;
+			ultima = -1;
+			usadas = 0;
+		}
+	}
+}
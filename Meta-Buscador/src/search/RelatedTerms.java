@@ -0,0 +1,189 @@
+package search;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import math.Kernels;
+import models.Expansion;
+
+import org.apache.lucene.index.AtomicReader;
+import org.apache.lucene.index.AtomicReaderContext;
+import org.apache.lucene.index.DocsEnum;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.Terms;
+import org.apache.lucene.index.TermsEnum;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.util.ArrayUtil;
+import org.apache.lucene.util.BytesRef;
+
+/**
+ *
+ * Calculo de los terminos relacionados a una query desde un indice independiente de la query
+ * (ver {@link Constants#INDICE_INDEPENDIENTE}).
+ *
+ * <p>En el modo dependiente de la query los terminos relacionados se recolectan al indexar
+ * ({@link search.PayloadFilter}); en el modo independiente el indice no conoce la query, por lo que se calculan
+ * al buscar, con la misma similitud: en cada documento que contiene alguna palabra de la query, los coeficientes
+ * de la query son la suma de los de sus palabras, y cada otra palabra del documento se agrega a un
+ * {@link search.RelatedTermsCollector} con |sim(c_query, c_palabra)|, sim(a, b) = (a, b) / (|a|^2 |b|^2).
+ * A diferencia del modo dependiente, los documentos pesan igual: el orden de las paginas depende de la query
+ * y no esta en el indice.
+ *
+ * <p>Los coeficientes se leen de un {@link search.SpectralSource}. Por cada segmento se recorren una vez el
+ * diccionario del campo y las postings de cada termino, saltando con
+ * {@link org.apache.lucene.index.DocsEnum#advance(int)} a los documentos de la query, por lo que el costo es
+ * proporcional al numero de terminos del campo mas los pares (documento de la query, palabra).
+ *
+ * @author Javier Fuentes (j.fuentes06@ufromail.cl)
+ * @version 1.0
+ * @since 1.0
+ *
+ */
+public class RelatedTerms {
+
+	private RelatedTerms()
+	{
+	}
+
+	/**
+	 * Calcula los terminos relacionados a una query.
+	 *
+	 * @param reader indice.
+	 * @param espectros origen de los coeficientes del indice.
+	 * @param campo campo de las palabras.
+	 * @param palabras palabras de la query (ver {@link search.PositionAnalyzer#palabras(String)}).
+	 * @param k numero de terminos.
+	 * @return los k terminos con mayor similitud, sin las palabras de la query.
+	 * @throws IOException
+	 */
+	public static Expansion calcular(IndexReader reader, SpectralSource espectros, String campo, String[] palabras,
+			int k) throws IOException
+	{
+		RelatedTermsCollector recolector = new RelatedTermsCollector(k);
+		BytesRef[] bytesPalabras = new BytesRef[palabras.length];
+		for (int q = 0; q < palabras.length; q++)
+		{
+			bytesPalabras[q] = new BytesRef(palabras[q]);
+		}
+		for (AtomicReaderContext context : reader.leaves())
+		{
+			recolectar(context, espectros.lector(context), campo, bytesPalabras, recolector);
+		}
+		return recolector.getExpansion();
+	}
+
+	/**
+	 * Recolecta los terminos relacionados de un segmento.
+	 */
+	private static void recolectar(AtomicReaderContext context, SpectralSource.Lector lector, String campo,
+			BytesRef[] palabras, RelatedTermsCollector recolector) throws IOException
+	{
+		AtomicReader reader = context.reader();
+		Terms terms = reader.terms(campo);
+		if (terms == null) return;
+		TermsEnum te = terms.iterator(null);
+
+		/**
+		 * Documentos con alguna palabra de la query, en orden, y los coeficientes de la query en cada uno
+		 * (una fila de largo ancho por documento, con ceros sobre su dimension).
+		 */
+		int[] docs = new int[0];
+		int numeroDocs = 0;
+		DocsEnum postings = null;
+		for (BytesRef palabra : palabras)
+		{
+			if (!te.seekExact(palabra)) continue;
+			postings = te.docs(reader.getLiveDocs(), postings, DocsEnum.FLAG_NONE);
+			for (int doc = postings.nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS; doc = postings.nextDoc())
+			{
+				docs = ArrayUtil.grow(docs, numeroDocs + 1);
+				docs[numeroDocs++] = doc;
+			}
+		}
+		if (numeroDocs == 0) return;
+		Arrays.sort(docs, 0, numeroDocs);
+		int distintos = 0;
+		for (int i = 0; i < numeroDocs; i++)
+		{
+			if (distintos == 0 || docs[distintos - 1] != docs[i]) docs[distintos++] = docs[i];
+		}
+		numeroDocs = distintos;
+
+		int ancho = Constants.ORDEN_EXPANSION + 1;
+		double[] fila = new double[ancho];
+		double[] query = new double[numeroDocs * ancho];
+		double[] normas = new double[numeroDocs];
+		for (int d = 0; d < numeroDocs; d++)
+		{
+			for (BytesRef palabra : palabras)
+			{
+				int dimension = lector.leer(docs[d], palabra, fila, 0);
+				if (dimension > ancho)
+				{
+					/**
+					 * Coeficientes mas largos: se agranda el ancho de todas las filas.
+					 */
+					double[] nueva = new double[numeroDocs * dimension];
+					for (int e = 0; e < numeroDocs; e++)
+					{
+						System.arraycopy(query, e * ancho, nueva, e * dimension, ancho);
+					}
+					query = nueva;
+					ancho = dimension;
+					fila = new double[ancho];
+					dimension = lector.leer(docs[d], palabra, fila, 0);
+				}
+				for (int j = 0; j < dimension; j++)
+				{
+					query[d * ancho + j] += fila[j];
+				}
+			}
+			normas[d] = Kernels.sumOfSquares(query, d * ancho, ancho);
+		}
+
+		/**
+		 * Similitud de cada otra palabra en cada documento de la query.
+		 */
+		te = terms.iterator(te);
+		BytesRef termino;
+		while ((termino = te.next()) != null)
+		{
+			if (esPalabra(termino, palabras)) continue;
+			postings = te.docs(reader.getLiveDocs(), postings, DocsEnum.FLAG_NONE);
+			int doc = postings.nextDoc();
+			for (int d = 0; d < numeroDocs && doc != DocIdSetIterator.NO_MORE_DOCS; d++)
+			{
+				if (doc < docs[d])
+				{
+					doc = postings.advance(docs[d]);
+				}
+				if (doc != docs[d] || normas[d] == 0) continue;
+				int dimension = lector.leer(doc, termino, fila, 0);
+				if (dimension > fila.length)
+				{
+					fila = new double[ArrayUtil.oversize(dimension, 8)];
+					dimension = lector.leer(doc, termino, fila, 0);
+				}
+				if (dimension > 0)
+				{
+					double similitud = Kernels.dot(query, d * ancho, fila, 0, Math.min(dimension, ancho))
+							/ (normas[d] * Kernels.sumOfSquares(fila, 0, dimension));
+					similitud = Math.abs(similitud);
+					if (similitud > 0)
+					{
+						recolector.agregar(termino, (float)similitud);
+					}
+				}
+			}
+		}
+	}
+
+	private static boolean esPalabra(BytesRef termino, BytesRef[] palabras)
+	{
+		for (BytesRef palabra : palabras)
+		{
+			if (palabra.bytesEquals(termino)) return true;
+		}
+		return false;
+	}
+}
@@ -0,0 +1,308 @@
+package search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import models.Expansion;
+
+import org.apache.lucene.util.ArrayUtil;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.BytesRefHash;
+import org.apache.lucene.util.UnicodeUtil;
+
+/**
+ *
+ * Recolector de los k terminos relacionados a la query con mayor similitud (expansion de la query).
+ *
+ * <p>Los terminos se guardan en un heap de minimo de capacidad k, en arreglos primitivos: el puntaje de cada
+ * posicion del heap y el identificador de su termino en un {@link org.apache.lucene.util.BytesRefHash}. Un termino
+ * no se repite: si se agrega de nuevo queda con su mayor puntaje. Un puntaje que no supera al menor del heap lleno
+ * se descarta sin buscar el termino, por lo que la mayoria de las llamadas no cuestan mas que una comparacion
+ * y ninguna genera objetos.
+ *
+ * <p>Una instancia no se puede usar desde varios threads; cada thread de indexacion usa la suya
+ * (ver {@link PorThread}) y se unen al final.
+ *
+ * @author Javier Fuentes (j.fuentes06@ufromail.cl)
+ * @version 1.0
+ * @since 1.0
+ *
+ */
+public class RelatedTermsCollector {
+
+	private final int capacidad;
+
+	/**
+	 * Heap: puntaje y termino de cada posicion, con el menor puntaje en la posicion 0.
+	 */
+	private final float[] puntajes;
+	private final int[] ids;
+	private int tamano;
+
+	/**
+	 * Terminos agregados y posicion de cada uno en el heap (-1 si no esta). Los terminos que salen del heap
+	 * se eliminan de la tabla cuando esta crece demasiado (ver {@link #compactar()}).
+	 */
+	private BytesRefHash terminos = new BytesRefHash();
+	private int[] posiciones = new int[16];
+	private final BytesRef utf8 = new BytesRef(16);
+
+	/**
+	 * Constructor de la clase.
+	 *
+	 * @param capacidad numero de terminos, k.
+	 */
+	public RelatedTermsCollector(int capacidad)
+	{
+		if (capacidad <= 0)
+		{
+			throw new IllegalArgumentException("Capacidad invalida: " + capacidad);
+		}
+		this.capacidad = capacidad;
+		this.puntajes = new float[capacidad];
+		this.ids = new int[capacidad];
+	}
+
+	/**
+	 * Agrega un termino, directamente desde el buffer de un token.
+	 *
+	 * @param buffer caracteres del termino.
+	 * @param largo numero de caracteres.
+	 * @param puntaje similitud del termino con la query.
+	 */
+	public void agregar(char[] buffer, int largo, float puntaje)
+	{
+		if (!this.competitivo(puntaje)) return;
+		if (utf8.bytes.length < largo * UnicodeUtil.MAX_UTF8_BYTES_PER_CHAR)
+		{
+			utf8.bytes = new byte[ArrayUtil.oversize(largo * UnicodeUtil.MAX_UTF8_BYTES_PER_CHAR, 1)];
+		}
+		utf8.length = UnicodeUtil.UTF16toUTF8(buffer, 0, largo, utf8.bytes);
+		this.agregarTermino(utf8, puntaje);
+	}
+
+	/**
+	 * Agrega un termino.
+	 *
+	 * @param termino termino, en UTF-8.
+	 * @param puntaje similitud del termino con la query.
+	 */
+	public void agregar(BytesRef termino, float puntaje)
+	{
+		if (!this.competitivo(puntaje)) return;
+		this.agregarTermino(termino, puntaje);
+	}
+
+	/**
+	 * Agrega los terminos de otro recolector (por ejemplo, el de otro thread).
+	 *
+	 * @param otro recolector, que no cambia.
+	 */
+	public void unir(RelatedTermsCollector otro)
+	{
+		BytesRef termino = new BytesRef();
+		for (int i = 0; i < otro.tamano; i++)
+		{
+			otro.terminos.get(otro.ids[i], termino);
+			this.agregar(termino, otro.puntajes[i]);
+		}
+	}
+
+	/**
+	 * @return numero de terminos recolectados.
+	 */
+	public int size()
+	{
+		return tamano;
+	}
+
+	/**
+	 * @return terminos recolectados, de mayor a menor puntaje.
+	 */
+	public Expansion getExpansion()
+	{
+		String[] t = new String[tamano];
+		float[] v = new float[tamano];
+		BytesRef termino = new BytesRef();
+		for (int i = 0; i < tamano; i++)
+		{
+			t[i] = terminos.get(ids[i], termino).utf8ToString();
+			v[i] = puntajes[i];
+		}
+		return new Expansion(t, v);
+	}
+
+	/**
+	 * Un puntaje es competitivo si el heap no esta lleno o si supera al menor (NaN no lo es).
+	 */
+	private boolean competitivo(float puntaje)
+	{
+		return tamano < capacidad ? puntaje == puntaje : puntaje > puntajes[0];
+	}
+
+	private void agregarTermino(BytesRef termino, float puntaje)
+	{
+		int id = terminos.add(termino);
+		if (id < 0)
+		{
+			id = -id - 1;
+			int posicion = posiciones[id];
+			if (posicion >= 0)
+			{
+				/**
+				 * Termino repetido: se deja el mayor puntaje.
+				 */
+				if (puntaje > puntajes[posicion])
+				{
+					puntajes[posicion] = puntaje;
+					this.bajar(posicion);
+				}
+				return;
+			}
+		}
+		else
+		{
+			if (id >= posiciones.length)
+			{
+				posiciones = ArrayUtil.grow(posiciones, id + 1);
+			}
+		}
+
+		int posicion;
+		if (tamano < capacidad)
+		{
+			posicion = tamano++;
+		}
+		else
+		{
+			posicion = 0;
+			posiciones[ids[0]] = -1;
+		}
+		ids[posicion] = id;
+		puntajes[posicion] = puntaje;
+		posiciones[id] = posicion;
+		if (posicion > 0) this.subir(posicion);
+		else this.bajar(posicion);
+
+		if (terminos.size() > 16 * capacidad + 64)
+		{
+			this.compactar();
+		}
+	}
+
+	/**
+	 * Deja en la tabla solo los terminos del heap.
+	 */
+	private void compactar()
+	{
+		BytesRefHash anterior = terminos;
+		terminos = new BytesRefHash();
+		Arrays.fill(posiciones, -1);
+		BytesRef termino = new BytesRef();
+		for (int i = 0; i < tamano; i++)
+		{
+			ids[i] = terminos.add(anterior.get(ids[i], termino));
+			posiciones[ids[i]] = i;
+		}
+	}
+
+	private void subir(int i)
+	{
+		while (i > 0)
+		{
+			int padre = (i - 1) >>> 1;
+			if (puntajes[padre] <= puntajes[i]) break;
+			this.intercambiar(i, padre);
+			i = padre;
+		}
+	}
+
+	private void bajar(int i)
+	{
+		while (true)
+		{
+			int menor = i;
+			int izquierdo = 2 * i + 1;
+			int derecho = izquierdo + 1;
+			if (izquierdo < tamano && puntajes[izquierdo] < puntajes[menor]) menor = izquierdo;
+			if (derecho < tamano && puntajes[derecho] < puntajes[menor]) menor = derecho;
+			if (menor == i) return;
+			this.intercambiar(i, menor);
+			i = menor;
+		}
+	}
+
+	private void intercambiar(int a, int b)
+	{
+		float puntaje = puntajes[a];
+		puntajes[a] = puntajes[b];
+		puntajes[b] = puntaje;
+		int id = ids[a];
+		ids[a] = ids[b];
+		ids[b] = id;
+		posiciones[ids[a]] = a;
+		posiciones[ids[b]] = b;
+	}
+
+	/**
+	 * Recolectores de varios threads de indexacion, uno por thread, que se unen al final.
+	 *
+	 * <p>{@link #get()} se puede llamar desde cualquier thread; {@link #getExpansion()} se llama cuando los
+	 * threads terminaron de agregar terminos.
+	 */
+	public static final class PorThread
+	{
+		private final int capacidad;
+		private final List<RelatedTermsCollector> instancias = new ArrayList<>();
+		private final ThreadLocal<RelatedTermsCollector> local = new ThreadLocal<RelatedTermsCollector>()
+		{
+			@Override
+			protected RelatedTermsCollector initialValue()
+			{
+				RelatedTermsCollector recolector = new RelatedTermsCollector(capacidad);
+				synchronized (instancias)
+				{
+					instancias.add(recolector);
+				}
+				return recolector;
+			}
+		};
+
+		/**
+		 * Constructor de la clase.
+		 *
+		 * @param capacidad numero de terminos, k.
+		 */
+		public PorThread(int capacidad)
+		{
+			this.capacidad = capacidad;
+		}
+
+		/**
+		 * @return recolector del thread actual.
+		 */
+		public RelatedTermsCollector get()
+		{
+			return local.get();
+		}
+
+		/**
+		 * Une los recolectores de todos los threads.
+		 *
+		 * @return k terminos con mayor puntaje, de mayor a menor.
+		 */
+		public Expansion getExpansion()
+		{
+			RelatedTermsCollector total = new RelatedTermsCollector(capacidad);
+			synchronized (instancias)
+			{
+				for (RelatedTermsCollector recolector : instancias)
+				{
+					total.unir(recolector);
+				}
+			}
+			return total.getExpansion();
+		}
+	}
+}
@@ -1,10 +1,13 @@
 package search;
 
+import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
 
 import models.ResultRank;
 
 import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.MultiFields;
 import org.apache.lucene.index.Term;
 import org.apache.lucene.search.BooleanClause.Occur;
 import org.apache.lucene.search.BooleanQuery;
@@ -33,6 +36,13 @@ public class Searcher {
 	private Directory dir;
 	private IndexSearcher searcher;
 	private models.Query query;
+	
+	/**
+	 * Origen de los coeficientes de cada (documento, palabra): archivo de espectros del indice o postings
+	 * (ver {@link Constants#ESPECTROS_PEREZOSOS}; en el modo dependiente de la query, siempre las postings),
+	 * null si el indice no tiene archivo de espectros ni docvalue del largo.
+	 */
+	private SpectralSource espectros;
 	/**
 	 * Constructor de la clase.
 	 * 
@@ -47,9 +57,36 @@ public class Searcher {
 			/**
 			 * Configuracion del indice.
 			 */
-			dir = FSDirectory.open(DBManager.getIndexFile(query));
+			File indexFile = Constants.INDICE_INDEPENDIENTE ? DBManager.getPageSetIndexFile(query)
+					: DBManager.getIndexFile(query);
+			dir = FSDirectory.open(indexFile);
 			searcher = new IndexSearcher(DirectoryReader.open(dir));
 			
+			/**
+			 * Coeficientes de las palabras de cada documento: calculados desde las postings o
+			 * leidos del archivo de espectros, mapeado en memoria.
+			 */
+			File archivoEspectros = new File(indexFile, Constants.ARCHIVO_ESPECTROS);
+			if (Constants.INDICE_INDEPENDIENTE && Constants.ESPECTROS_PEREZOSOS)
+			{
+				espectros = new PostingsSpectra(Constants.CONTENTS, Constants.EXPANSION, Constants.ORDEN_EXPANSION,
+						Constants.CAPACIDAD_ESPECTROS);
+			}
+			else if (Constants.INDICE_INDEPENDIENTE && archivoEspectros.exists())
+			{
+				espectros = new SpectralStore(archivoEspectros);
+			}
+			else if (!Constants.INDICE_INDEPENDIENTE
+					&& MultiFields.getMergedFieldInfos(searcher.getIndexReader()).fieldInfo(Constants.LARGO) != null)
+			{
+				/**
+				 * Modo dependiente de la query: solo para las queries de varias palabras, desde las postings
+				 * (los indices anteriores al docvalue del largo usan la busqueda por terminos).
+				 */
+				espectros = new PostingsSpectra(Constants.CONTENTS, Constants.EXPANSION, Constants.ORDEN_EXPANSION,
+						Constants.CAPACIDAD_ESPECTROS);
+			}
+			
 			/**
 			 * Analisis del score de cada payload.
 			 * Recibe como parametro la query para poder analizar los pesos de los terminos.
@@ -61,6 +98,34 @@ public class Searcher {
 		}
 	}
 	
+	/**
+	 * @return origen de los coeficientes de cada (documento, palabra), null si no hay.
+	 */
+	public SpectralSource getEspectros()
+	{
+		return espectros;
+	}
+	
+	/**
+	 * Cierra el indice y el origen de los coeficientes.
+	 * 
+	 * @throws IOException
+	 */
+	public void close() throws IOException
+	{
+		try
+		{
+			searcher.getIndexReader().close();
+		}
+		finally
+		{
+			if (espectros != null)
+			{
+				espectros.close();
+			}
+		}
+	}
+	
 	/**
 	 * 
 	 * Metodo que calcula los primeros elemetos relevantes de la busqueda.
@@ -74,9 +139,34 @@ public class Searcher {
 	public ResultRank result() throws IOException
 	{
 		/**
-		 * Seleccion de la consulta principal.
+		 * Palabras de la consulta principal, separadas como en el indice.
+		 */
+		String[] palabras = PositionAnalyzer.palabras(query.getQuery());
+		
+		/**
+		 * Las queries de varias palabras se puntuan por la cercania de sus palabras, en ambos modos.
+		 */
+		if (espectros != null && palabras.length > 1)
+		{
+			this.buscar(this.proximityQuery(palabras));
+			return null;
+		}
+		
+		/**
+		 * En el modo independiente la similitud con los terminos relacionados se calcula al buscar,
+		 * saltando los documentos que no pueden quedar entre los primeros (ver {@link MaxScoreCollector}).
+		 * Sin terminos relacionados se usa la busqueda por terminos (el tipo de la consulta aparece en los
+		 * resultados, ver {@link #printResults(IndexSearcher, Query, TopDocs)}).
 		 */
-		TermQuery term = new TermQuery(new Term(Constants.CONTENTS, query.getQuery()));
+		if (Constants.INDICE_INDEPENDIENTE && espectros != null && palabras.length == 1)
+		{
+			Query spectral = this.spectralQuery(palabras[0]);
+			if (spectral != null)
+			{
+				this.buscar(spectral);
+				return null;
+			}
+		}
 		
 		/**
 		 * Consultas secundarias.
@@ -84,7 +174,10 @@ public class Searcher {
 		//PayloadTermQuery term1 = new PayloadTermQuery(new Term("body", "chao"), new AveragePayloadFunction());
 		//PayloadTermQuery term2= new PayloadTermQuery(new Term("body", "chao"), new AveragePayloadFunction());
 		BooleanQuery bq = new BooleanQuery();
-		bq.add(term, Occur.MUST);
+		for (String palabra : palabras)
+		{
+			bq.add(new TermQuery(new Term(Constants.CONTENTS, palabra)), Occur.MUST);
+		}
 		//bq.add(term1, Occur.SHOULD);
 		//bq.add(term2, Occur.SHOULD);
 		
@@ -96,6 +189,76 @@ public class Searcher {
 		return null;
 	}
 
+	/**
+	 * Busca e imprime los primeros documentos de una consulta espectral, saltando los que no pueden quedar
+	 * entre los primeros (ver {@link MaxScoreCollector}).
+	 * 
+	 * @param spectral consulta.
+	 * @throws IOException
+	 */
+	private void buscar(Query spectral) throws IOException
+	{
+		MaxScoreCollector collector = new MaxScoreCollector(Constants.MAX_SEARCH);
+		searcher.search(spectral, collector);
+		TopDocs docs = collector.topDocs();
+		printResults(searcher, spectral, docs);
+	}
+	
+	/**
+	 * Genera la consulta por cercania de las palabras de una query de varias palabras.
+	 * 
+	 * @param palabras palabras de la query, sin repetidas (ver {@link search.PositionAnalyzer#palabras(String)}).
+	 * @return consulta.
+	 */
+	private Query proximityQuery(String[] palabras)
+	{
+		Term[] terminos = new Term[palabras.length];
+		for (int i = 0; i < palabras.length; i++)
+		{
+			terminos[i] = new Term(Constants.CONTENTS, palabras[i]);
+		}
+		return new SpectralProximityQuery(terminos, espectros);
+	}
+	
+	/**
+	 * Genera la consulta espectral, con los terminos relacionados de la query como contexto.
+	 * 
+	 * <p>Si la query no trae terminos relacionados (el indice independiente no los recolecta al indexar), se
+	 * calculan desde el indice (ver {@link search.RelatedTerms}) y se guardan en la query.
+	 * 
+	 * @param palabra palabra de la query.
+	 * @return consulta, null si no hay terminos relacionados.
+	 * @throws IOException
+	 */
+	private Query spectralQuery(String palabra) throws IOException
+	{
+		Term principal = new Term(Constants.CONTENTS, palabra);
+		models.Expansion expansion = query.getExpansion();
+		if (expansion.size() == 0)
+		{
+			expansion = RelatedTerms.calcular(searcher.getIndexReader(), espectros, Constants.CONTENTS,
+					new String[] {palabra}, Constants.TERMINOS_RELACIONADOS);
+			query.setExpansion(expansion);
+		}
+		ArrayList<Term> contexto = new ArrayList<>();
+		ArrayList<Float> pesos = new ArrayList<>();
+		for (int i = 0; i < expansion.size(); i++)
+		{
+			if (expansion.getValue(i) > 0)
+			{
+				contexto.add(new Term(Constants.CONTENTS, expansion.getTerm(i)));
+				pesos.add(expansion.getValue(i));
+			}
+		}
+		if (contexto.isEmpty())
+		{
+			return null;
+		}
+		float[] valores = new float[pesos.size()];
+		for (int i = 0; i < valores.length; i++) valores[i] = pesos.get(i);
+		return new SpectralQuery(principal, contexto.toArray(new Term[0]), valores, espectros);
+	}
+	
 	/**
 	 * Imprime los resultados de la busqueda.
 	 * 
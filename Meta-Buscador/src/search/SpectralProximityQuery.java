@@ -0,0 +1,226 @@
+package search;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import org.apache.lucene.index.AtomicReaderContext;
+import org.apache.lucene.index.DocsEnum;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.TermContext;
+import org.apache.lucene.index.TermState;
+import org.apache.lucene.index.Terms;
+import org.apache.lucene.index.TermsEnum;
+import org.apache.lucene.search.ComplexExplanation;
+import org.apache.lucene.search.Explanation;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.Scorer;
+import org.apache.lucene.search.Weight;
+import org.apache.lucene.util.Bits;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.ToStringUtils;
+
+/**
+ *
+ * Consulta de varias palabras que puntua los documentos por la cercania de sus palabras, con sus coeficientes.
+ *
+ * <p>Coinciden los documentos que contienen todas las palabras: las postings de las palabras se recorren
+ * juntas, saltando con {@link org.apache.lucene.index.DocsEnum#advance(int)} los documentos a los que les falta
+ * alguna (ver {@link search.SpectralProximityScorer}). Los coeficientes de cada palabra se leen de un
+ * {@link search.SpectralSource}, como en {@link search.SpectralQuery}: en el modo dependiente de la query
+ * se calculan desde las postings ({@link search.PostingsSpectra}), con el largo de cada documento guardado al
+ * indexar.
+ *
+ * <p>La expansion es lineal, por lo que los coeficientes de la suma de las funciones indicadoras de las
+ * palabras son la suma c = c_1 + ... + c_n de sus coeficientes. El puntaje de un documento es
+ * <pre>
+ * boost * |(|c|^2 - sum_i |c_i|^2)| / ((n - 1) sum_i |c_i|^2) = boost * |2 sum_i&lt;j (c_i, c_j)| / ((n - 1) sum_i |c_i|^2)
+ * </pre>
+ * entre 0 y boost: es alto cuando las palabras aparecen en las mismas zonas del documento, a la resolucion
+ * del orden de la expansion. Da un orden por cercania como {@link org.apache.lucene.search.spans.SpanNearQuery},
+ * sin intersectar las posiciones de las palabras.
+ *
+ * @author Javier Fuentes (j.fuentes06@ufromail.cl)
+ * @version 1.0
+ * @since 1.0
+ *
+ */
+public class SpectralProximityQuery extends Query {
+
+	private final Term[] terminos;
+	private final SpectralSource espectros;
+
+	/**
+	 * Constructor de la clase.
+	 *
+	 * @param terminos palabras de la query, al menos dos distintas, todas del mismo campo. Las repetidas se
+	 * cuentan una vez: si no, sus coeficientes se sumarian dos veces y sus postings se recorrerian dos veces.
+	 * @param espectros origen de los coeficientes (archivo de espectros o postings del indice).
+	 */
+	public SpectralProximityQuery(Term[] terminos, SpectralSource espectros)
+	{
+		LinkedHashSet<Term> distintos = new LinkedHashSet<>(Arrays.asList(terminos));
+		if (distintos.size() < 2)
+		{
+			throw new IllegalArgumentException("Se necesitan al menos dos terminos distintos");
+		}
+		for (Term t : distintos)
+		{
+			if (!t.field().equals(terminos[0].field()))
+			{
+				throw new IllegalArgumentException("Los terminos deben ser del mismo campo");
+			}
+		}
+		this.terminos = distintos.toArray(new Term[distintos.size()]);
+		this.espectros = espectros;
+	}
+
+	public Term[] getTerminos()
+	{
+		return terminos.clone();
+	}
+
+	@Override
+	public Weight createWeight(IndexSearcher searcher) throws IOException
+	{
+		return new ProximityWeight(searcher);
+	}
+
+	@Override
+	public void extractTerms(Set<Term> terms)
+	{
+		for (Term t : terminos)
+		{
+			terms.add(t);
+		}
+	}
+
+	@Override
+	public String toString(String field)
+	{
+		StringBuilder sb = new StringBuilder("cercania(");
+		if (!terminos[0].field().equals(field))
+		{
+			sb.append(terminos[0].field()).append(':');
+		}
+		for (int i = 0; i < terminos.length; i++)
+		{
+			if (i > 0) sb.append(' ');
+			sb.append(terminos[i].text());
+		}
+		sb.append(')').append(ToStringUtils.boost(getBoost()));
+		return sb.toString();
+	}
+
+	@Override
+	public boolean equals(Object o)
+	{
+		if (!super.equals(o)) return false;
+		SpectralProximityQuery other = (SpectralProximityQuery)o;
+		return Arrays.equals(terminos, other.terminos) && espectros == other.espectros;
+	}
+
+	@Override
+	public int hashCode()
+	{
+		return 31 * super.hashCode() + Arrays.hashCode(terminos);
+	}
+
+	/**
+	 * Peso de la consulta para un {@link org.apache.lucene.search.IndexSearcher}.
+	 */
+	private class ProximityWeight extends Weight
+	{
+		private final TermContext[] estados;
+		private float normaQuery;
+		private float peso;
+
+		ProximityWeight(IndexSearcher searcher) throws IOException
+		{
+			this.estados = new TermContext[terminos.length];
+			for (int i = 0; i < terminos.length; i++)
+			{
+				estados[i] = TermContext.build(searcher.getTopReaderContext(), terminos[i]);
+			}
+			this.peso = getBoost();
+		}
+
+		@Override
+		public Query getQuery()
+		{
+			return SpectralProximityQuery.this;
+		}
+
+		@Override
+		public float getValueForNormalization() throws IOException
+		{
+			return peso * peso;
+		}
+
+		@Override
+		public void normalize(float norm, float topLevelBoost)
+		{
+			normaQuery = norm * topLevelBoost;
+			peso = getBoost() * normaQuery;
+		}
+
+		/**
+		 * Postings de cada palabra, de la menos frecuente a la mas frecuente; null si falta alguna en el segmento.
+		 */
+		@Override
+		public Scorer scorer(AtomicReaderContext context, Bits acceptDocs) throws IOException
+		{
+			Terms terms = context.reader().terms(terminos[0].field());
+			if (terms == null)
+			{
+				return null;
+			}
+			TermsEnum te = terms.iterator(null);
+			DocsEnum[] docs = new DocsEnum[terminos.length];
+			BytesRef[] bytes = new BytesRef[terminos.length];
+			for (int i = 0; i < terminos.length; i++)
+			{
+				TermState state = estados[i].get(context.ord);
+				if (state == null)
+				{
+					return null;
+				}
+				te.seekExact(terminos[i].bytes(), state);
+				DocsEnum d = te.docs(acceptDocs, null, DocsEnum.FLAG_NONE);
+				BytesRef b = terminos[i].bytes();
+				
+				/**
+				 * Insercion ordenada por numero de documentos (el costo de las postings).
+				 */
+				int j = i;
+				while (j > 0 && docs[j - 1].cost() > d.cost())
+				{
+					docs[j] = docs[j - 1];
+					bytes[j] = bytes[j - 1];
+					j--;
+				}
+				docs[j] = d;
+				bytes[j] = b;
+			}
+			return new SpectralProximityScorer(this, docs, espectros.lector(context), bytes, peso);
+		}
+
+		@Override
+		public Explanation explain(AtomicReaderContext context, int doc) throws IOException
+		{
+			Scorer scorer = scorer(context, context.reader().getLiveDocs());
+			if (scorer != null && scorer.advance(doc) == doc)
+			{
+				ComplexExplanation result = new ComplexExplanation(true, scorer.score(),
+						"cercania espectral de " + SpectralProximityQuery.this.toString(terminos[0].field()) + ", producto de:");
+				result.addDetail(new Explanation(getBoost(), "boost"));
+				result.addDetail(new Explanation(normaQuery, "queryNorm"));
+				result.addDetail(new Explanation(scorer.score() / peso, "cercania"));
+				return result;
+			}
+			return new ComplexExplanation(false, 0.0F, "no contiene todos los terminos de " + SpectralProximityQuery.this);
+		}
+	}
+}
@@ -0,0 +1,180 @@
+package search;
+
+import java.io.IOException;
+
+import math.Kernels;
+
+import org.apache.lucene.index.DocsEnum;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.search.Scorer;
+import org.apache.lucene.search.Weight;
+import org.apache.lucene.util.ArrayUtil;
+import org.apache.lucene.util.BytesRef;
+
+/**
+ *
+ * Puntuacion de {@link search.SpectralProximityQuery} en un segmento del indice.
+ *
+ * <p>Recorre los documentos que contienen todas las palabras: avanza las postings de la palabra menos frecuente
+ * y alinea las demas con {@link org.apache.lucene.index.DocsEnum#advance(int)}; si una palabra salta a un
+ * documento posterior, la primera avanza hasta ese documento (leapfrog). Por cada documento lee los coeficientes
+ * de las palabras desde un {@link search.SpectralSource} y calcula su cercania. No se generan objetos por
+ * documento.
+ *
+ * @author Javier Fuentes (j.fuentes06@ufromail.cl)
+ * @version 1.0
+ * @since 1.0
+ *
+ */
+class SpectralProximityScorer extends Scorer {
+
+	/**
+	 * Postings de cada palabra, de la menos frecuente a la mas frecuente.
+	 */
+	private final DocsEnum[] docs;
+	private final SpectralSource.Lector espectros;
+	private final BytesRef[] terminos;
+	private final float peso;
+
+	/**
+	 * Coeficientes de las palabras en el documento actual, una fila de largo {@link #ancho} por palabra.
+	 */
+	private int ancho = Constants.ORDEN_EXPANSION + 1;
+	private double[] filas;
+	private final int[] dimensiones;
+
+	/**
+	 * Puntaje del documento actual, calculado solo una vez.
+	 */
+	private int docPuntaje = -1;
+	private float puntaje;
+
+	/**
+	 * Constructor de la clase.
+	 *
+	 * @param weight peso de la consulta.
+	 * @param docs postings de cada palabra, de la menos frecuente a la mas frecuente.
+	 * @param espectros lector de los coeficientes del segmento.
+	 * @param terminos palabras, en el orden de docs.
+	 * @param peso peso normalizado de la consulta.
+	 */
+	SpectralProximityScorer(Weight weight, DocsEnum[] docs, SpectralSource.Lector espectros,
+			BytesRef[] terminos, float peso)
+	{
+		super(weight);
+		this.docs = docs;
+		this.espectros = espectros;
+		this.terminos = terminos;
+		this.peso = peso;
+		this.filas = new double[terminos.length * ancho];
+		this.dimensiones = new int[terminos.length];
+	}
+
+	@Override
+	public float score() throws IOException
+	{
+		int doc = docs[0].docID();
+		if (doc == docPuntaje) return puntaje;
+		docPuntaje = doc;
+
+		/**
+		 * Coeficientes de cada palabra; si alguna no cabe se agranda el ancho de las filas y se leen de nuevo.
+		 */
+		for (int i = 0; i < terminos.length; i++)
+		{
+			dimensiones[i] = espectros.leer(doc, terminos[i], filas, i * ancho);
+			if (dimensiones[i] > ancho)
+			{
+				ancho = ArrayUtil.oversize(dimensiones[i], 8);
+				filas = new double[terminos.length * ancho];
+				i = -1;
+			}
+		}
+
+		/**
+		 * |c|^2 - sum_i |c_i|^2 = 2 sum_i<j (c_i, c_j), con c la suma de los coeficientes de las palabras.
+		 */
+		double cuadrados = 0;
+		double cruzados = 0;
+		for (int i = 0; i < terminos.length; i++)
+		{
+			if (dimensiones[i] <= 0) continue;
+			cuadrados += Kernels.sumOfSquares(filas, i * ancho, dimensiones[i]);
+			for (int j = i + 1; j < terminos.length; j++)
+			{
+				if (dimensiones[j] <= 0) continue;
+				cruzados += Kernels.dot(filas, i * ancho, filas, j * ancho, Math.min(dimensiones[i], dimensiones[j]));
+			}
+		}
+		puntaje = cuadrados > 0 ? (float)(peso * Math.abs(2 * cruzados) / ((terminos.length - 1) * cuadrados)) : 0;
+		return puntaje;
+	}
+
+	/**
+	 * Alinea las postings de todas las palabras en el primer documento, desde doc, que las contiene todas.
+	 *
+	 * @param doc documento actual de las postings de la primera palabra.
+	 * @return documento, {@link org.apache.lucene.search.DocIdSetIterator#NO_MORE_DOCS} al terminar.
+	 * @throws IOException
+	 */
+	private int alinear(int doc) throws IOException
+	{
+		int i = 1;
+		while (doc != DocIdSetIterator.NO_MORE_DOCS && i < docs.length)
+		{
+			int otro = docs[i].docID();
+			if (otro < doc)
+			{
+				otro = docs[i].advance(doc);
+			}
+			if (otro > doc)
+			{
+				doc = docs[0].advance(otro);
+				i = 1;
+			}
+			else
+			{
+				i++;
+			}
+		}
+		return doc;
+	}
+
+	/**
+	 * Suma de las frecuencias de las palabras en el documento.
+	 */
+	@Override
+	public int freq() throws IOException
+	{
+		int freq = 0;
+		for (DocsEnum d : docs)
+		{
+			freq += d.freq();
+		}
+		return freq;
+	}
+
+	@Override
+	public int docID()
+	{
+		return docs[0].docID();
+	}
+
+	@Override
+	public int nextDoc() throws IOException
+	{
+		return this.alinear(docs[0].nextDoc());
+	}
+
+	@Override
+	public int advance(int target) throws IOException
+	{
+		return this.alinear(docs[0].advance(target));
+	}
+
+	@Override
+	public long cost()
+	{
+		return docs[0].cost();
+	}
+}
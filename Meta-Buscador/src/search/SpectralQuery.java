@@ -0,0 +1,232 @@
+package search;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Set;
+
+import org.apache.lucene.index.AtomicReaderContext;
+import org.apache.lucene.index.DocsEnum;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.TermContext;
+import org.apache.lucene.index.TermState;
+import org.apache.lucene.index.Terms;
+import org.apache.lucene.index.TermsEnum;
+import org.apache.lucene.search.ComplexExplanation;
+import org.apache.lucene.search.Explanation;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.Scorer;
+import org.apache.lucene.search.Weight;
+import org.apache.lucene.util.Bits;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.ToStringUtils;
+
+/**
+ *
+ * Consulta que puntua los documentos con la similitud espectral calculada al buscar.
+ *
+ * <p>Para indices independientes de la query (ver {@link Constants#INDICE_INDEPENDIENTE}): los coeficientes
+ * de cada palabra de cada documento se leen del archivo de espectros ({@link search.SpectralStore}) o se
+ * calculan desde las postings ({@link search.PostingsSpectra}), y la similitud con la query se calcula en
+ * {@link search.SpectralScorer}, por lo que un indice sirve para cualquier query sobre sus paginas.
+ *
+ * <p>Coinciden los documentos que contienen el termino de la query. El puntaje de un documento es
+ * <pre>
+ * boost * sum_i peso_i * |sim(c_query, c_i)|,   sim(a, b) = (a, b) / (|a|^2 |b|^2)
+ * </pre>
+ * sobre los terminos de contexto que aparecen en el documento, con la misma similitud de
+ * {@link search.PayloadFilter}. Se necesita al menos un termino de contexto: sin el la similitud solo
+ * compararia el termino consigo mismo (ver {@link search.RelatedTerms} para calcularlos al buscar).
+ *
+ * @author Javier Fuentes (j.fuentes06@ufromail.cl)
+ * @version 1.0
+ * @since 1.0
+ *
+ */
+public class SpectralQuery extends Query {
+
+	private final Term termino;
+	private final Term[] contexto;
+	private final float[] pesos;
+	private final SpectralSource espectros;
+
+	/**
+	 * Constructor de la clase.
+	 *
+	 * @param termino termino de la query.
+	 * @param contexto terminos con los que se compara el termino de la query en cada documento.
+	 * @param pesos peso de cada termino de contexto.
+	 * @param espectros origen de los coeficientes (archivo de espectros o postings del indice).
+	 * @throws IllegalArgumentException si no hay terminos de contexto o su numero difiere del de pesos.
+	 */
+	public SpectralQuery(Term termino, Term[] contexto, float[] pesos, SpectralSource espectros)
+	{
+		if (contexto.length != pesos.length)
+		{
+			throw new IllegalArgumentException("Distinto numero de terminos y pesos");
+		}
+		if (contexto.length == 0)
+		{
+			throw new IllegalArgumentException("Se necesita al menos un termino de contexto");
+		}
+		this.termino = termino;
+		this.contexto = contexto.clone();
+		this.pesos = pesos.clone();
+		this.espectros = espectros;
+	}
+
+	public Term getTermino()
+	{
+		return termino;
+	}
+
+	@Override
+	public Weight createWeight(IndexSearcher searcher) throws IOException
+	{
+		return new SpectralWeight(searcher);
+	}
+
+	@Override
+	public void extractTerms(Set<Term> terms)
+	{
+		terms.add(termino);
+		for (Term t : contexto)
+		{
+			terms.add(t);
+		}
+	}
+
+	@Override
+	public String toString(String field)
+	{
+		StringBuilder sb = new StringBuilder("espectral(");
+		if (!termino.field().equals(field))
+		{
+			sb.append(termino.field()).append(':');
+		}
+		sb.append(termino.text());
+		for (int i = 0; i < contexto.length; i++)
+		{
+			sb.append(' ').append(contexto[i].text()).append('^').append(pesos[i]);
+		}
+		sb.append(')').append(ToStringUtils.boost(getBoost()));
+		return sb.toString();
+	}
+
+	@Override
+	public boolean equals(Object o)
+	{
+		if (!super.equals(o)) return false;
+		SpectralQuery other = (SpectralQuery)o;
+		return termino.equals(other.termino) && Arrays.equals(contexto, other.contexto)
+				&& Arrays.equals(pesos, other.pesos) && espectros == other.espectros;
+	}
+
+	@Override
+	public int hashCode()
+	{
+		return 31 * (31 * (31 * super.hashCode() + termino.hashCode()) + Arrays.hashCode(contexto))
+				+ Arrays.hashCode(pesos);
+	}
+
+	/**
+	 * Peso de la consulta para un {@link org.apache.lucene.search.IndexSearcher}.
+	 */
+	private class SpectralWeight extends Weight
+	{
+		private final TermContext estado;
+		private float normaQuery;
+		private float peso;
+
+		/**
+		 * Terminos de contexto, sus pesos y sus cotas (ver {@link search.SpectralScorer}), de mayor a menor
+		 * peso * cota.
+		 */
+		private final BytesRef[] bytesContexto;
+		private final float[] pesosContexto;
+		private final double[] cotas;
+		private final double cotaQuery;
+
+		SpectralWeight(IndexSearcher searcher) throws IOException
+		{
+			this.estado = TermContext.build(searcher.getTopReaderContext(), termino);
+			this.bytesContexto = new BytesRef[contexto.length];
+			this.pesosContexto = new float[contexto.length];
+			this.cotas = new double[contexto.length];
+			this.cotaQuery = 1 / Math.sqrt(espectros.minimoCuadrados(termino.bytes()));
+			for (int i = 0; i < contexto.length; i++)
+			{
+				BytesRef bytes = contexto[i].bytes();
+				float p = pesos[i];
+				double cota = 1 / Math.sqrt(espectros.minimoCuadrados(bytes));
+				
+				/**
+				 * Insercion ordenada por peso * cota.
+				 */
+				int j = i;
+				while (j > 0 && pesosContexto[j - 1] * cotas[j - 1] < p * cota)
+				{
+					bytesContexto[j] = bytesContexto[j - 1];
+					pesosContexto[j] = pesosContexto[j - 1];
+					cotas[j] = cotas[j - 1];
+					j--;
+				}
+				bytesContexto[j] = bytes;
+				pesosContexto[j] = p;
+				cotas[j] = cota;
+			}
+			this.peso = getBoost();
+		}
+
+		@Override
+		public Query getQuery()
+		{
+			return SpectralQuery.this;
+		}
+
+		@Override
+		public float getValueForNormalization() throws IOException
+		{
+			return peso * peso;
+		}
+
+		@Override
+		public void normalize(float norm, float topLevelBoost)
+		{
+			normaQuery = norm * topLevelBoost;
+			peso = getBoost() * normaQuery;
+		}
+
+		@Override
+		public Scorer scorer(AtomicReaderContext context, Bits acceptDocs) throws IOException
+		{
+			TermState state = estado.get(context.ord);
+			Terms terms = context.reader().terms(termino.field());
+			if (state == null || terms == null)
+			{
+				return null;
+			}
+			TermsEnum te = terms.iterator(null);
+			te.seekExact(termino.bytes(), state);
+			DocsEnum docs = te.docs(acceptDocs, null, DocsEnum.FLAG_NONE);
+			return new SpectralScorer(this, docs, espectros.lector(context), termino.bytes(), bytesContexto,
+					pesosContexto, cotas, cotaQuery, peso);
+		}
+
+		@Override
+		public Explanation explain(AtomicReaderContext context, int doc) throws IOException
+		{
+			Scorer scorer = scorer(context, context.reader().getLiveDocs());
+			if (scorer != null && scorer.advance(doc) == doc)
+			{
+				ComplexExplanation result = new ComplexExplanation(true, scorer.score(),
+						"similitud espectral de " + termino + ", producto de:");
+				result.addDetail(new Explanation(getBoost(), "boost"));
+				result.addDetail(new Explanation(normaQuery, "queryNorm"));
+				result.addDetail(new Explanation(scorer.score() / peso, "suma de similitudes"));
+				return result;
+			}
+			return new ComplexExplanation(false, 0.0F, "no coincide con " + termino);
+		}
+	}
+}
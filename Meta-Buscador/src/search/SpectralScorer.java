@@ -0,0 +1,229 @@
+package search;
+
+import java.io.IOException;
+
+import math.Kernels;
+
+import org.apache.lucene.index.DocsEnum;
+import org.apache.lucene.search.Scorer;
+import org.apache.lucene.search.Weight;
+import org.apache.lucene.util.ArrayUtil;
+import org.apache.lucene.util.BytesRef;
+
+/**
+ *
+ * Puntuacion de {@link search.SpectralQuery} en un segmento del indice.
+ *
+ * <p>Recorre las postings del termino de la query. Por cada documento lee los coeficientes del termino de
+ * la query y de los terminos de contexto desde un {@link search.SpectralSource} y calcula las similitudes.
+ * No se generan objetos por documento.
+ *
+ * <p>Con un puntaje minimo ({@link #setMinimoCompetitivo(float)}, ver {@link search.MaxScoreCollector}) los
+ * documentos que no pueden alcanzarlo se saltan (MaxScore). Por Cauchy-Schwarz
+ * |sim(c_query, c_i)| &lt;= 1 / (|c_query| |c_i|) &lt;= cota_i / |c_query|, con cota_i = 1 / sqrt(m_i) y m_i el
+ * minimo de |c_i|^2 guardado al indexar ({@link search.SpectralSource#minimoCuadrados(BytesRef)}). Los terminos
+ * de contexto se evaluan de mayor a menor peso_i * cota_i y el documento se descarta en cuanto el puntaje
+ * parcial mas las cotas de los terminos restantes queda bajo el minimo, sin leer sus coeficientes. Si el
+ * minimo supera la cota de todo el segmento, el recorrido termina.
+ *
+ * @author Javier Fuentes (j.fuentes06@ufromail.cl)
+ * @version 1.0
+ * @since 1.0
+ *
+ */
+class SpectralScorer extends Scorer {
+
+	/**
+	 * Holgura relativa de las cotas, por el redondeo de los calculos.
+	 */
+	private static final double HOLGURA = 1e-9;
+
+	private final DocsEnum docs;
+	private final SpectralSource.Lector espectros;
+	private final BytesRef termino;
+	private final BytesRef[] contexto;
+	private final float[] pesos;
+	private final float peso;
+
+	/**
+	 * Coeficientes del termino de la query y de un termino de contexto en el documento actual.
+	 */
+	private double[] coeficientes = new double[Constants.ORDEN_EXPANSION + 1];
+	private double[] coeficientesContexto = new double[Constants.ORDEN_EXPANSION + 1];
+
+	/**
+	 * Puntaje del documento actual, calculado solo una vez.
+	 */
+	private int docPuntaje = -1;
+	private float puntaje;
+
+	/**
+	 * Poda: peso_i * cota_i de cada termino de contexto, su suma, cota de todos los documentos y puntaje minimo.
+	 * Sin cotas (o con pesos negativos) no se poda.
+	 */
+	private final double[] cotasPesadas;
+	private final double sumaCotas;
+	private final double cotaTotal;
+	private final boolean podable;
+	private float minimo;
+	private boolean terminado;
+
+	/**
+	 * Constructor de la clase.
+	 *
+	 * @param weight peso de la consulta.
+	 * @param docs postings del termino de la query.
+	 * @param espectros lector de los coeficientes del segmento.
+	 * @param termino termino de la query.
+	 * @param contexto terminos de contexto, de mayor a menor peso * cota.
+	 * @param pesos peso de cada termino de contexto.
+	 * @param cotas cota_i de cada termino de contexto (infinito si no se conoce).
+	 * @param cotaQuery 1 / sqrt(m) del termino de la query (infinito si no se conoce).
+	 * @param peso peso normalizado de la consulta.
+	 */
+	SpectralScorer(Weight weight, DocsEnum docs, SpectralSource.Lector espectros,
+			BytesRef termino, BytesRef[] contexto, float[] pesos, double[] cotas, double cotaQuery, float peso)
+	{
+		super(weight);
+		this.docs = docs;
+		this.espectros = espectros;
+		this.termino = termino;
+		this.contexto = contexto;
+		this.pesos = pesos;
+		this.peso = peso;
+
+		boolean podable = peso >= 0;
+		double suma = 0;
+		this.cotasPesadas = new double[contexto.length];
+		for (int i = 0; i < contexto.length; i++)
+		{
+			podable &= pesos[i] >= 0;
+			cotasPesadas[i] = pesos[i] == 0 ? 0 : pesos[i] * cotas[i];
+			suma += cotasPesadas[i];
+		}
+		this.sumaCotas = suma;
+		this.podable = podable && !Double.isInfinite(suma);
+		this.cotaTotal = peso * suma * cotaQuery;
+	}
+
+	/**
+	 * Indica el puntaje minimo que debe alcanzar un documento para ser recolectado; los documentos con menor
+	 * puntaje se pueden saltar.
+	 *
+	 * @param minimo puntaje minimo.
+	 */
+	void setMinimoCompetitivo(float minimo)
+	{
+		this.minimo = minimo;
+		if (podable && minimo > cotaTotal * (1 + HOLGURA))
+		{
+			terminado = true;
+		}
+	}
+
+	@Override
+	public float score() throws IOException
+	{
+		int doc = docs.docID();
+		if (doc != docPuntaje)
+		{
+			this.calcular(doc, 0);
+		}
+		return puntaje;
+	}
+
+	/**
+	 * Calcula el puntaje de un documento, salvo que no pueda alcanzar el minimo.
+	 *
+	 * @param doc documento.
+	 * @param minimo puntaje minimo, 0 para calcularlo siempre.
+	 * @return false si el documento se descarto (su puntaje es menor que el minimo).
+	 * @throws IOException
+	 */
+	private boolean calcular(int doc, float minimo) throws IOException
+	{
+		int dimension = espectros.leer(doc, termino, coeficientes, 0);
+		if (dimension > coeficientes.length)
+		{
+			coeficientes = new double[ArrayUtil.oversize(dimension, 8)];
+			espectros.leer(doc, termino, coeficientes, 0);
+		}
+		docPuntaje = doc;
+		puntaje = 0;
+		if (dimension < 0) return minimo <= 0;
+		double cuadradosQuery = Kernels.sumOfSquares(coeficientes, 0, dimension);
+		double suma = 0;
+		double inversa = 1 / Math.sqrt(cuadradosQuery);
+		double restante = sumaCotas * inversa;
+		for (int i = 0; i < contexto.length; i++)
+		{
+			if (minimo > 0 && peso * (suma + restante) * (1 + HOLGURA) < minimo)
+			{
+				docPuntaje = -1;
+				return false;
+			}
+			restante -= cotasPesadas[i] * inversa;
+			int dimensionContexto = espectros.leer(doc, contexto[i], coeficientesContexto, 0);
+			if (dimensionContexto > coeficientesContexto.length)
+			{
+				coeficientesContexto = new double[ArrayUtil.oversize(dimensionContexto, 8)];
+				espectros.leer(doc, contexto[i], coeficientesContexto, 0);
+			}
+			if (dimensionContexto > 0)
+			{
+				double similitud = Kernels.dot(coeficientes, 0, coeficientesContexto, 0,
+						Math.min(dimension, dimensionContexto))
+						/ (cuadradosQuery * Kernels.sumOfSquares(coeficientesContexto, 0, dimensionContexto));
+				suma += pesos[i] * Math.abs(similitud);
+			}
+		}
+		puntaje = (float)(peso * suma);
+		return puntaje >= minimo;
+	}
+
+	/**
+	 * Avanza hasta un documento competitivo, desde el documento actual de las postings.
+	 */
+	private int competitivo(int doc) throws IOException
+	{
+		while (doc != NO_MORE_DOCS && podable && minimo > 0)
+		{
+			if (terminado) return NO_MORE_DOCS;
+			if (this.calcular(doc, minimo)) break;
+			doc = docs.nextDoc();
+		}
+		return doc;
+	}
+
+	@Override
+	public int freq() throws IOException
+	{
+		return docs.freq();
+	}
+
+	@Override
+	public int docID()
+	{
+		return terminado ? NO_MORE_DOCS : docs.docID();
+	}
+
+	@Override
+	public int nextDoc() throws IOException
+	{
+		if (terminado) return NO_MORE_DOCS;
+		return this.competitivo(docs.nextDoc());
+	}
+
+	@Override
+	public int advance(int target) throws IOException
+	{
+		if (terminado) return NO_MORE_DOCS;
+		return this.competitivo(docs.advance(target));
+	}
+
+	@Override
+	public long cost()
+	{
+		return docs.cost();
+	}
+}
@@ -0,0 +1,31 @@
+package search;
+
+import java.io.IOException;
+
+/**
+ *
+ * Destino de los coeficientes de las palabras de un documento.
+ *
+ * <p>{@link search.PayloadFilter} entrega los coeficientes de cada palabra una sola vez por documento,
+ * en su primera aparicion. Los arreglos son del filtro y se reutilizan, por lo que el destino debe
+ * copiar lo que necesite antes de retornar.
+ *
+ * @author Javier Fuentes (j.fuentes06@ufromail.cl)
+ * @version 1.0
+ * @since 1.0
+ *
+ */
+public interface SpectralSink {
+
+	/**
+	 * Recibe los coeficientes de una palabra del documento actual.
+	 *
+	 * @param termino buffer con la palabra.
+	 * @param largo largo de la palabra en termino.
+	 * @param coeficientes arreglo con los coeficientes.
+	 * @param offset inicio de los coeficientes en coeficientes.
+	 * @param dimension numero de coeficientes (orden + 1).
+	 * @throws IOException
+	 */
+	void agregar(char[] termino, int largo, double[] coeficientes, int offset, int dimension) throws IOException;
+}
@@ -0,0 +1,61 @@
+package search;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+import org.apache.lucene.index.AtomicReaderContext;
+import org.apache.lucene.util.BytesRef;
+
+/**
+ *
+ * Origen de los coeficientes de cada (documento, palabra) al buscar (ver {@link search.SpectralQuery}).
+ *
+ * <p>Los coeficientes se leen del archivo de espectros ({@link search.SpectralStore}) o se calculan desde
+ * las posiciones de las postings del indice ({@link search.PostingsSpectra}). Se cierra junto con el reader
+ * del indice (ver {@link search.Searcher#close()}).
+ *
+ * @author Javier Fuentes (j.fuentes06@ufromail.cl)
+ * @version 1.0
+ * @since 1.0
+ *
+ */
+public interface SpectralSource extends Closeable {
+
+	/**
+	 * Lectura de los coeficientes en un segmento del indice.
+	 */
+	interface Lector
+	{
+		/**
+		 * Copia los coeficientes de una palabra de un documento.
+		 *
+		 * <p>Si el destino no tiene espacio para todos los coeficientes no se copia nada; se retorna
+		 * la dimension para que se llame de nuevo con un destino mayor.
+		 *
+		 * @param doc documento del segmento.
+		 * @param termino palabra, en UTF-8.
+		 * @param destino arreglo para los coeficientes.
+		 * @param offset inicio de c_0 en destino.
+		 * @return numero de coeficientes (orden + 1), -1 si la palabra no esta en el documento.
+		 * @throws IOException
+		 */
+		int leer(int doc, BytesRef termino, double[] destino, int offset) throws IOException;
+	}
+
+	/**
+	 * Cota inferior de la suma de los cuadrados de los coeficientes de una palabra, en todos los documentos
+	 * del indice. Permite acotar la similitud con la palabra al buscar (ver {@link search.MaxScoreCollector}).
+	 *
+	 * @param termino palabra, en UTF-8.
+	 * @return cota, 0 si no se conoce e infinito si la palabra no esta en el indice.
+	 * @throws IOException
+	 */
+	double minimoCuadrados(BytesRef termino) throws IOException;
+
+	/**
+	 * @param context segmento del indice.
+	 * @return lector de los coeficientes del segmento, para un solo thread.
+	 * @throws IOException
+	 */
+	Lector lector(AtomicReaderContext context) throws IOException;
+}
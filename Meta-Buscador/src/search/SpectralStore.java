@@ -0,0 +1,287 @@
+package search;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+import math.SpectralVector;
+
+import org.apache.lucene.index.AtomicReaderContext;
+import org.apache.lucene.index.NumericDocValues;
+import org.apache.lucene.util.ArrayUtil;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.BytesRefHash;
+import org.apache.lucene.util.StringHelper;
+
+/**
+ *
+ * Archivo de espectros de un indice: un vector de coeficientes por cada (documento, palabra).
+ *
+ * <p>Los coeficientes de una palabra se guardan una sola vez por documento, y no una vez por aparicion
+ * como en los payloads. El archivo se escribe con {@link search.SpectralStoreWriter} y se lee mapeado en
+ * memoria ({@link java.nio.MappedByteBuffer}); las busquedas y los productos se hacen directamente sobre
+ * el archivo mapeado, sin generar objetos.
+ *
+ * <p>Formato (big-endian):
+ * <ul>
+ * <li>encabezado: {@link #MAGIA} (int) y {@link #VERSION} (byte).</li>
+ * <li>datos, una entrada por (documento, palabra): documento (int), largo de la palabra (short),
+ * palabra en UTF-8 y vector codificado (ver {@link math.SpectralVector}).</li>
+ * <li>tabla de posiciones con direccionamiento abierto: por casilla, hash (int) y posicion de la
+ * entrada (int, -1 si esta vacia). El hash es el murmurhash3 de la palabra con el documento como semilla.</li>
+ * <li>cotas, una por palabra distinta: largo de la palabra (short), palabra en UTF-8 y
+ * minimo de la suma de los cuadrados de sus coeficientes en todos los documentos (float, redondeado hacia abajo).</li>
+ * <li>pie: posicion de la tabla, numero de casillas, numero de entradas, posicion de las cotas y numero de
+ * palabras y {@link #MAGIA} (int).</li>
+ * </ul>
+ * El documento es el valor de {@link Constants#DOCID}, que no cambia al unir segmentos del indice.
+ * El archivo esta limitado a 2 GB (un solo mapeo). Las cotas se cargan en memoria al abrir el archivo.
+ * Solo se leen archivos de la version {@link #VERSION}.
+ *
+ * <p>Las instancias se pueden usar desde varios threads, ya que solo se hacen lecturas absolutas.
+ *
+ * @author Javier Fuentes (j.fuentes06@ufromail.cl)
+ * @version 1.0
+ * @since 1.0
+ *
+ */
+public class SpectralStore implements SpectralSource {
+
+	public static final int MAGIA = 0x53504543;
+	public static final byte VERSION = 2;
+
+	static final int LARGO_ENCABEZADO = 5;
+	static final int LARGO_CASILLA = 8;
+	static final int LARGO_PIE = 24;
+
+	private RandomAccessFile archivo;
+	private MappedByteBuffer buffer;
+	private int inicioTabla;
+	private int mascara;
+	private int entradas;
+
+	/**
+	 * Cota de cada palabra: la palabra con identificador id en terminos tiene cota minimos[id].
+	 */
+	private final BytesRefHash terminos = new BytesRefHash();
+	private float[] minimos = new float[0];
+
+	/**
+	 * Constructor de la clase, mapea el archivo en memoria.
+	 *
+	 * @param archivo archivo de espectros.
+	 * @throws IOException si el archivo no existe o no tiene el formato esperado.
+	 */
+	public SpectralStore(File archivo) throws IOException
+	{
+		this.archivo = new RandomAccessFile(archivo, "r");
+		try
+		{
+			long largo = this.archivo.length();
+			if (largo < LARGO_ENCABEZADO + LARGO_PIE || largo > Integer.MAX_VALUE)
+			{
+				throw new IOException("Archivo de espectros invalido: " + archivo);
+			}
+			buffer = this.archivo.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, largo);
+			byte version = buffer.get(4);
+			if (version != VERSION)
+			{
+				throw new IOException("Version de archivo de espectros desconocida: " + version);
+			}
+			int pie = (int)largo - LARGO_PIE;
+			if (buffer.getInt(0) != MAGIA || pie < LARGO_ENCABEZADO || buffer.getInt((int)largo - 4) != MAGIA)
+			{
+				throw new IOException("Archivo de espectros invalido: " + archivo);
+			}
+			inicioTabla = buffer.getInt(pie);
+			mascara = buffer.getInt(pie + 4) - 1;
+			entradas = buffer.getInt(pie + 8);
+			this.cargarCotas(buffer.getInt(pie + 12), buffer.getInt(pie + 16));
+		}
+		catch (IOException e)
+		{
+			this.archivo.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Carga la seccion de cotas.
+	 *
+	 * @param inicio posicion de la seccion.
+	 * @param palabras numero de palabras.
+	 */
+	private void cargarCotas(int inicio, int palabras)
+	{
+		minimos = new float[palabras];
+		BytesRef termino = new BytesRef(new byte[64]);
+		int p = inicio;
+		for (int i = 0; i < palabras; i++)
+		{
+			int largo = buffer.getShort(p) & 0xFFFF;
+			termino.bytes = ArrayUtil.grow(termino.bytes, largo);
+			for (int b = 0; b < largo; b++)
+			{
+				termino.bytes[b] = buffer.get(p + 2 + b);
+			}
+			termino.length = largo;
+			minimos[terminos.add(termino)] = buffer.getFloat(p + 2 + largo);
+			p += 2 + largo + 4;
+		}
+	}
+
+	/**
+	 * Cota inferior guardada al escribir el archivo; infinito si la palabra no esta en el archivo.
+	 */
+	@Override
+	public double minimoCuadrados(BytesRef termino)
+	{
+		int id = terminos.find(termino);
+		return id < 0 ? Double.POSITIVE_INFINITY : minimos[id];
+	}
+
+	/**
+	 * Busca el vector de una palabra de un documento.
+	 *
+	 * @param documento identificador del documento ({@link Constants#DOCID}).
+	 * @param termino palabra, en UTF-8 (como en los terminos del indice).
+	 * @return posicion del vector, para {@link #producto(int, double[], int, int)} y los demas
+	 *  metodos de lectura, o -1 si la palabra no esta en el documento.
+	 */
+	public int buscar(int documento, BytesRef termino)
+	{
+		int hash = StringHelper.murmurhash3_x86_32(termino.bytes, termino.offset, termino.length, documento);
+		int casilla = hash & mascara;
+		while (true)
+		{
+			int inicio = inicioTabla + casilla * LARGO_CASILLA;
+			int entrada = buffer.getInt(inicio + 4);
+			if (entrada < 0)
+			{
+				return -1;
+			}
+			if (buffer.getInt(inicio) == hash && buffer.getInt(entrada) == documento
+					&& iguales(entrada + 6, buffer.getShort(entrada + 4) & 0xFFFF, termino))
+			{
+				return entrada + 6 + termino.length;
+			}
+			casilla = (casilla + 1) & mascara;
+		}
+	}
+
+	/**
+	 * Compara una palabra del archivo con un termino.
+	 */
+	private boolean iguales(int inicio, int largo, BytesRef termino)
+	{
+		if (largo != termino.length) return false;
+		for (int i = 0; i < largo; i++)
+		{
+			if (buffer.get(inicio + i) != termino.bytes[termino.offset + i]) return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Producto escalar de un vector del archivo con coeficientes sin comprimir.
+	 *
+	 * @param vector posicion del vector (ver {@link #buscar(int, BytesRef)}).
+	 * @param coeficientes coeficientes b_0, b_1, ...
+	 * @param offset inicio de b_0 en coeficientes.
+	 * @param largo numero de coeficientes de b.
+	 * @return producto escalar.
+	 */
+	public double producto(int vector, double[] coeficientes, int offset, int largo)
+	{
+		return SpectralVector.dot(buffer, vector, coeficientes, offset, largo);
+	}
+
+	/**
+	 * @param vector posicion del vector.
+	 * @return suma de los cuadrados de los coeficientes del vector.
+	 */
+	public double sumaCuadrados(int vector)
+	{
+		return SpectralVector.sumOfSquares(buffer, vector);
+	}
+
+	/**
+	 * Decodifica un vector del archivo.
+	 *
+	 * @param vector posicion del vector.
+	 * @param coeficientes destino, con al menos {@link #getDimension(int)} posiciones desde offset.
+	 * @param offset inicio de c_0 en coeficientes.
+	 * @return numero de coeficientes (orden + 1).
+	 */
+	public int decodificar(int vector, double[] coeficientes, int offset)
+	{
+		return SpectralVector.decode(buffer, vector, coeficientes, offset);
+	}
+
+	/**
+	 * @param vector posicion del vector.
+	 * @return numero de coeficientes del vector (orden + 1).
+	 */
+	public int getDimension(int vector)
+	{
+		return buffer.getShort(vector + 1) & 0xFFFF;
+	}
+
+	/**
+	 * Vector como objeto, para los casos en que no importa generar objetos.
+	 *
+	 * @param vector posicion del vector.
+	 * @return vector, sin copiar los coeficientes.
+	 */
+	public SpectralVector getVector(int vector)
+	{
+		return SpectralVector.wrap(buffer, vector);
+	}
+
+	/**
+	 * Lector de un segmento: el documento del segmento se traduce a su {@link Constants#DOCID} con el docvalue.
+	 */
+	@Override
+	public Lector lector(AtomicReaderContext context) throws IOException
+	{
+		final NumericDocValues ids = context.reader().getNumericDocValues(Constants.DOCID);
+		if (ids == null)
+		{
+			throw new IllegalStateException("El indice no tiene docvalues de " + Constants.DOCID);
+		}
+		return new Lector()
+		{
+			@Override
+			public int leer(int doc, BytesRef termino, double[] destino, int offset)
+			{
+				int vector = buscar((int)ids.get(doc), termino);
+				if (vector < 0) return -1;
+				int dimension = getDimension(vector);
+				if (destino.length - offset >= dimension)
+				{
+					decodificar(vector, destino, offset);
+				}
+				return dimension;
+			}
+		};
+	}
+
+	/**
+	 * @return numero de entradas (documento, palabra) del archivo.
+	 */
+	public int getEntradas()
+	{
+		return entradas;
+	}
+
+	/**
+	 * Cierra el archivo. El mapeo se libera cuando el buffer deja de usarse (recoleccion de basura).
+	 */
+	@Override
+	public void close() throws IOException
+	{
+		archivo.close();
+	}
+}
@@ -0,0 +1,253 @@
+package search;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import math.SpectralVector;
+
+import org.apache.lucene.util.ArrayUtil;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.BytesRefHash;
+import org.apache.lucene.util.StringHelper;
+import org.apache.lucene.util.UnicodeUtil;
+
+/**
+ *
+ * Escritura del archivo de espectros de un indice (ver {@link search.SpectralStore}).
+ *
+ * <p>Las entradas se escriben en orden de llegada en la seccion de datos; en memoria solo se guarda,
+ * por entrada, su hash y su posicion, y por palabra el minimo de la suma de los cuadrados de sus coeficientes.
+ * La tabla de posiciones y la seccion de cotas se escriben al cerrar.
+ * El archivo se escribe con un nombre temporal y se renombra al cerrar, por lo que un archivo de espectros
+ * existente siempre esta completo.
+ * Antes de analizar cada documento se indica su identificador con {@link #setDocumento(int)}.
+ *
+ * @author Javier Fuentes (j.fuentes06@ufromail.cl)
+ * @version 1.0
+ * @since 1.0
+ *
+ */
+public class SpectralStoreWriter implements SpectralSink, Closeable {
+
+	private DataOutputStream salida;
+	private File archivo;
+	private File temporal;
+	private SpectralVector.Format formato;
+
+	/**
+	 * Posicion actual en el archivo.
+	 */
+	private long posicion;
+
+	/**
+	 * Hash y posicion de cada entrada.
+	 */
+	private int[] hashes;
+	private int[] posiciones;
+	private int entradas;
+
+	private int documento = -1;
+
+	/**
+	 * Palabras distintas y minimo de la suma de los cuadrados de los coeficientes (decodificados) de cada una.
+	 */
+	private final BytesRefHash terminos = new BytesRefHash();
+	private double[] minimos = new double[64];
+	private final BytesRef clave = new BytesRef();
+
+	/**
+	 * Buffers reutilizados: palabra en UTF-8 y vector codificado.
+	 */
+	private byte[] utf8;
+	private ByteBuffer vector;
+
+	/**
+	 * Constructor de la clase.
+	 *
+	 * @param archivo archivo de espectros (se reemplaza si existe).
+	 * @param formato codificacion de los coeficientes (FLOAT32, FLOAT16 o INT8).
+	 * @throws IOException
+	 */
+	public SpectralStoreWriter(File archivo, SpectralVector.Format formato) throws IOException
+	{
+		if (formato == SpectralVector.Format.SPARSE)
+		{
+			throw new IllegalArgumentException("Formato no soportado: " + formato);
+		}
+		this.formato = formato;
+		this.archivo = archivo;
+		this.temporal = new File(archivo.getPath() + ".tmp");
+		this.salida = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporal), 1 << 16));
+		this.hashes = new int[64];
+		this.posiciones = new int[64];
+		this.utf8 = new byte[64];
+		this.vector = ByteBuffer.allocate(256);
+
+		salida.writeInt(SpectralStore.MAGIA);
+		salida.writeByte(SpectralStore.VERSION);
+		posicion = SpectralStore.LARGO_ENCABEZADO;
+	}
+
+	/**
+	 * Indica el documento al que pertenecen las entradas siguientes.
+	 *
+	 * @param documento identificador del documento ({@link Constants#DOCID}).
+	 */
+	public void setDocumento(int documento)
+	{
+		this.documento = documento;
+	}
+
+	/**
+	 * Agrega una entrada (documento actual, palabra).
+	 */
+	@Override
+	public void agregar(char[] termino, int largo, double[] coeficientes, int offset, int dimension) throws IOException
+	{
+		if (documento < 0)
+		{
+			throw new IllegalStateException("Documento no indicado");
+		}
+		if (utf8.length < largo * UnicodeUtil.MAX_UTF8_BYTES_PER_CHAR)
+		{
+			utf8 = new byte[ArrayUtil.oversize(largo * UnicodeUtil.MAX_UTF8_BYTES_PER_CHAR, 1)];
+		}
+		int bytes = UnicodeUtil.UTF16toUTF8(termino, 0, largo, utf8);
+		if (bytes > 0xFFFF)
+		{
+			throw new IllegalArgumentException("Palabra demasiado larga");
+		}
+
+		SpectralVector codificado = SpectralVector.encode(coeficientes, offset, dimension, formato);
+		if (vector.capacity() < codificado.getEncodedLength())
+		{
+			vector = ByteBuffer.allocate(ArrayUtil.oversize(codificado.getEncodedLength(), 1));
+		}
+		vector.clear();
+		codificado.writeTo(vector);
+
+		int largoEntrada = 4 + 2 + bytes + vector.position();
+		if (posicion + largoEntrada > Integer.MAX_VALUE)
+		{
+			throw new IOException("El archivo de espectros supera 2 GB");
+		}
+		if (entradas == hashes.length)
+		{
+			hashes = ArrayUtil.grow(hashes);
+			posiciones = ArrayUtil.grow(posiciones, hashes.length);
+		}
+		hashes[entradas] = StringHelper.murmurhash3_x86_32(utf8, 0, bytes, documento);
+		posiciones[entradas] = (int)posicion;
+		entradas++;
+
+		salida.writeInt(documento);
+		salida.writeShort(bytes);
+		salida.write(utf8, 0, bytes);
+		salida.write(vector.array(), 0, vector.position());
+		posicion += largoEntrada;
+
+		/**
+		 * Cota de la palabra, con los coeficientes tal como se leen del archivo.
+		 */
+		double cuadrados = SpectralVector.sumOfSquares(vector, 0);
+		clave.bytes = utf8;
+		clave.length = bytes;
+		int id = terminos.add(clave);
+		if (id >= 0)
+		{
+			if (id == minimos.length)
+			{
+				minimos = ArrayUtil.grow(minimos);
+			}
+			minimos[id] = cuadrados;
+		}
+		else
+		{
+			id = -id - 1;
+			minimos[id] = Math.min(minimos[id], cuadrados);
+		}
+	}
+
+	/**
+	 * @return numero de entradas escritas.
+	 */
+	public int getEntradas()
+	{
+		return entradas;
+	}
+
+	/**
+	 * Escribe la tabla de posiciones, cierra el archivo y lo renombra.
+	 *
+	 * <p>La tabla tiene direccionamiento abierto (sondeo lineal), con una potencia de 2 de casillas
+	 * y un factor de carga de a lo mas 1/2. Despues de la tabla se escribe la seccion de cotas.
+	 */
+	@Override
+	public void close() throws IOException
+	{
+		if (salida == null) return;
+		int casillas = Integer.highestOneBit(Math.max(2 * entradas, 1) * 2 - 1);
+		int mascara = casillas - 1;
+		int[] tablaHash = new int[casillas];
+		int[] tablaPosicion = new int[casillas];
+		java.util.Arrays.fill(tablaPosicion, -1);
+		for (int i = 0; i < entradas; i++)
+		{
+			int casilla = hashes[i] & mascara;
+			while (tablaPosicion[casilla] >= 0)
+			{
+				casilla = (casilla + 1) & mascara;
+			}
+			tablaHash[casilla] = hashes[i];
+			tablaPosicion[casilla] = posiciones[i];
+		}
+
+		long inicioTabla = posicion;
+		for (int c = 0; c < casillas; c++)
+		{
+			salida.writeInt(tablaHash[c]);
+			salida.writeInt(tablaPosicion[c]);
+		}
+
+		/**
+		 * Cotas: el minimo se redondea hacia abajo al pasarlo a float, para que siga siendo una cota.
+		 */
+		long inicioCotas = inicioTabla + (long)casillas * SpectralStore.LARGO_CASILLA;
+		long largoCotas = 0;
+		BytesRef t = new BytesRef();
+		for (int id = 0; id < terminos.size(); id++)
+		{
+			terminos.get(id, t);
+			float minimo = (float)minimos[id];
+			if (minimo > minimos[id])
+			{
+				minimo = Math.nextDown(minimo);
+			}
+			salida.writeShort(t.length);
+			salida.write(t.bytes, t.offset, t.length);
+			salida.writeFloat(minimo);
+			largoCotas += 2 + t.length + 4;
+		}
+		if (inicioCotas + largoCotas + SpectralStore.LARGO_PIE > Integer.MAX_VALUE)
+		{
+			throw new IOException("El archivo de espectros supera 2 GB");
+		}
+		salida.writeInt((int)inicioTabla);
+		salida.writeInt(casillas);
+		salida.writeInt(entradas);
+		salida.writeInt((int)inicioCotas);
+		salida.writeInt(terminos.size());
+		salida.writeInt(SpectralStore.MAGIA);
+		salida.close();
+		salida = null;
+		if ((archivo.exists() && !archivo.delete()) || !temporal.renameTo(archivo))
+		{
+			throw new IOException("No se pudo escribir el archivo de espectros: " + archivo);
+		}
+	}
+}
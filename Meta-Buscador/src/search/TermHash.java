@@ -0,0 +1,248 @@
+package search;
+
+import java.util.Arrays;
+
+/**
+ *
+ * Tabla hash de terminos sobre arreglos de caracteres.
+ *
+ * <p>Asigna a cada termino distinto un identificador consecutivo (0, 1, 2, ...).
+ * Los terminos se buscan directamente sobre el buffer de un
+ * {@link org.apache.lucene.analysis.tokenattributes.CharTermAttribute},
+ * sin generar Strings ni otros objetos por token: los caracteres de todos los terminos
+ * se guardan en un solo arreglo y la tabla usa direccionamiento abierto (sondeo lineal)
+ * sobre arreglos de enteros.
+ *
+ * @author Javier Fuentes (j.fuentes06@ufromail.cl)
+ * @version 1.0
+ * @since 1.0
+ *
+ */
+public class TermHash {
+
+	private static final int VACIO = -1;
+
+	/**
+	 * Caracteres de todos los terminos, uno tras otro.
+	 */
+	private char[] caracteres;
+	private int largoCaracteres;
+
+	/**
+	 * Inicio, largo y hash de cada termino (por identificador).
+	 */
+	private int[] inicio;
+	private int[] largo;
+	private int[] hashes;
+	private int cantidad;
+
+	/**
+	 * Tabla de identificadores, VACIO en las posiciones libres.
+	 */
+	private int[] tabla;
+	private int mascara;
+
+	/**
+	 * Constructor de la clase.
+	 */
+	public TermHash()
+	{
+		caracteres = new char[256];
+		inicio = new int[16];
+		largo = new int[16];
+		hashes = new int[16];
+		tabla = new int[32];
+		Arrays.fill(tabla, VACIO);
+		mascara = tabla.length - 1;
+	}
+
+	/**
+	 * Busca un termino.
+	 *
+	 * @param buffer caracteres del termino
+	 * @param length largo del termino
+	 * @return identificador del termino, o -1 si no se encuentra.
+	 */
+	public int find(char[] buffer, int length)
+	{
+		int hash = hash(buffer, length);
+		int slot = hash & mascara;
+		while (tabla[slot] != VACIO)
+		{
+			int id = tabla[slot];
+			if (hashes[id] == hash && equals(id, buffer, length))
+				return id;
+			slot = (slot + 1) & mascara;
+		}
+		return VACIO;
+	}
+
+	/**
+	 * Ingresa un termino, si no se encuentra ya en la tabla.
+	 *
+	 * @param buffer caracteres del termino
+	 * @param length largo del termino
+	 * @return identificador del termino.
+	 */
+	public int add(char[] buffer, int length)
+	{
+		int hash = hash(buffer, length);
+		int slot = hash & mascara;
+		while (tabla[slot] != VACIO)
+		{
+			int id = tabla[slot];
+			if (hashes[id] == hash && equals(id, buffer, length))
+				return id;
+			slot = (slot + 1) & mascara;
+		}
+
+		/**
+		 * Termino nuevo.
+		 */
+		if (cantidad == inicio.length)
+		{
+			inicio = Arrays.copyOf(inicio, 2 * cantidad);
+			largo = Arrays.copyOf(largo, 2 * cantidad);
+			hashes = Arrays.copyOf(hashes, 2 * cantidad);
+		}
+		if (largoCaracteres + length > caracteres.length)
+		{
+			caracteres = Arrays.copyOf(caracteres, Math.max(2 * caracteres.length, largoCaracteres + length));
+		}
+		System.arraycopy(buffer, 0, caracteres, largoCaracteres, length);
+		int id = cantidad++;
+		inicio[id] = largoCaracteres;
+		largo[id] = length;
+		hashes[id] = hash;
+		largoCaracteres += length;
+		tabla[slot] = id;
+
+		/**
+		 * Se mantiene la tabla a lo mas medio llena.
+		 */
+		if (2 * cantidad > tabla.length)
+			rehash();
+		return id;
+	}
+
+	/**
+	 * Ingresa un termino dado como String.
+	 *
+	 * @param termino
+	 * @return identificador del termino.
+	 */
+	public int add(String termino)
+	{
+		return add(termino.toCharArray(), termino.length());
+	}
+
+	/**
+	 * Busca un termino dado como String.
+	 *
+	 * @param termino
+	 * @return identificador del termino, o -1 si no se encuentra.
+	 */
+	public int find(String termino)
+	{
+		return find(termino.toCharArray(), termino.length());
+	}
+
+	/**
+	 * Cantidad de terminos distintos.
+	 * @return cantidad
+	 */
+	public int size()
+	{
+		return cantidad;
+	}
+
+	/**
+	 * Obtiene un termino como String (genera un objeto, no usar por token).
+	 *
+	 * @param id identificador del termino
+	 * @return termino
+	 */
+	public String getTerm(int id)
+	{
+		return new String(caracteres, inicio[id], largo[id]);
+	}
+
+	/**
+	 * Copia los caracteres de un termino a un buffer.
+	 *
+	 * @param id identificador del termino
+	 * @param buffer destino, de largo suficiente (ver {@link #getLength(int)})
+	 * @return largo del termino
+	 */
+	public int copyTerm(int id, char[] buffer)
+	{
+		System.arraycopy(caracteres, inicio[id], buffer, 0, largo[id]);
+		return largo[id];
+	}
+
+	/**
+	 * Largo de un termino.
+	 * @param id identificador del termino
+	 * @return largo
+	 */
+	public int getLength(int id)
+	{
+		return largo[id];
+	}
+
+	/**
+	 * Elimina todos los terminos, conservando la memoria reservada.
+	 */
+	public void clear()
+	{
+		Arrays.fill(tabla, VACIO);
+		cantidad = 0;
+		largoCaracteres = 0;
+	}
+
+	private boolean equals(int id, char[] buffer, int length)
+	{
+		if (largo[id] != length)
+			return false;
+		int offset = inicio[id];
+		for (int i=0; i < length; i++)
+		{
+			if (caracteres[offset + i] != buffer[i])
+				return false;
+		}
+		return true;
+	}
+
+	private void rehash()
+	{
+		tabla = new int[2 * tabla.length];
+		Arrays.fill(tabla, VACIO);
+		mascara = tabla.length - 1;
+		for (int id=0; id < cantidad; id++)
+		{
+			int slot = hashes[id] & mascara;
+			while (tabla[slot] != VACIO)
+				slot = (slot + 1) & mascara;
+			tabla[slot] = id;
+		}
+	}
+
+	/**
+	 * Funcion hash sobre los caracteres, con mezcla final de los bits
+	 * para que el sondeo lineal se distribuya bien.
+	 */
+	private static int hash(char[] buffer, int length)
+	{
+		int h = 0;
+		for (int i=0; i < length; i++)
+		{
+			h = 31*h + buffer[i];
+		}
+		h ^= h >>> 16;
+		h *= 0x85ebca6b;
+		h ^= h >>> 13;
+		h *= 0xc2b2ae35;
+		h ^= h >>> 16;
+		return h;
+	}
+}
@@ -40,14 +40,7 @@ public class Test {
 		IndexWriterConfig config = new IndexWriterConfig(Version.LATEST, new PayloadAnalyzer(query,0));
 		IndexWriter writer = new IndexWriter(dir, config);
 		
-		query.setTerms(new String[9]);
-		query.setValues(new float[9]);
-		
-		for (int i=0; i < 9; i++)
-		{
-			query.getTerms()[i] = "";
-			query.getValues()[i] = 0.0F;
-		}
+		RelatedTermsCollector.PorThread relacionados = new RelatedTermsCollector.PorThread(9);
 		
 		for (int i=0; i < docs.length; i++)
 		{
@@ -60,7 +53,8 @@ public class Test {
 			 */
 			float value =(float)(-Math.pow((double)i, 2.0)/Math.pow(4.0, 2.0) + 1.F);
 			System.out.println("value:" + value);
-			writer.addDocument(doc, new PayloadAnalyzer(query,value));
+			writer.addDocument(doc, new PayloadAnalyzer(query, value, null, relacionados));
+			query.setExpansion(relacionados.getExpansion());
 			System.out.println();
 			System.out.println(Arrays.toString(query.getTerms()));
 			System.out.println(Arrays.toString(query.getValues()));
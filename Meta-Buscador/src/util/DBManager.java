@@ -156,6 +156,35 @@ public class DBManager {
 		return null;
 	}
 	
+	/**
+	 * Obtiene la ruta del indice independiente de la query (ver {@link search.Constants#INDICE_INDEPENDIENTE}).
+	 * 
+	 * <p>La ruta depende solo del conjunto de paginas de la query (hash de sus urls ordenadas), por lo que
+	 * queries con las mismas paginas comparten el indice. Estos indices no se eliminan con {@link #removeIndex(Query)}.
+	 * 
+	 * @param q
+	 * @return File que contiene la ruta al indice, null si no se pueden leer las urls de la query.
+	 */
+	public static File getPageSetIndexFile(Query q)
+	{
+		try 
+		{
+			ArrayList<String> urls = getUrls(q);
+			java.util.Collections.sort(urls);
+			StringBuilder sb = new StringBuilder();
+			for (String url : urls) {
+				sb.append(url).append('\n');
+			}
+			File f = new File(baseurl + "indexes/pages-" + toSHA2(sb.toString()));
+			if (!f.exists()) 
+				f.mkdir();
+			return f;
+		}catch(FileNotFoundException | SecurityException e){
+			e.printStackTrace();
+		}
+		return null;
+	}
+	
 	/**
 	 * Permite ingresar una pagina al indice.
 	 * 
@@ -0,0 +1,151 @@
+package math;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Accuracy test of the Fourier expansion against the direct formula
+ * 
+ * For random word distributions the coefficients c_1, ..., c_order are 
+ * calculated in default mode (table of roots of unity for integer scales,
+ * trigonometric functions otherwise) and in high-order mode (angle-addition
+ * recurrence, see Fourier.setHighOrder()), and compared with the direct
+ * evaluation of the formula of Fourier,
+ * c_n = -+1 / (k pi) sqrt(L / 2) \sum_p (f(2 pi k p / L) - f(2 pi k (p - 1) / L)),
+ * k = (n + 1) / 2, f = cos for odd and sin for even n. For integer scales the
+ * product k p is reduced modulo L before the trigonometric functions are 
+ * evaluated, so that the reference has no error from large arguments.
+ * 
+ * A coefficient vector passes if max_n |c_n - c_n^direct| <= TOLERANCE |c|, 
+ * where |c| is the norm of the direct coefficient vector (c_0 included). The
+ * test covers orders up to 256 and integer and non-integer scales; it 
+ * prints the largest relative deviation of every mode and fails with an 
+ * AssertionError if the tolerance is exceeded.
+ * 
+ * @author Javier Fuentes (j.fuentes06@ufromail.cl)
+ * @version 1.0
+ */
+public class FourierAccuracyTest {
+    
+    /**
+     * Largest allowed deviation, relative to the norm of the coefficients
+     */
+    public static final double TOLERANCE = 1e-10;
+    
+    private static final int[] ORDERS = {6, 30, 64, 128, 256};
+    
+    private static final double[] SCALES = 
+	{97, 1000, 20011, 200000, 1000.5, 20011.25, 123456.789};
+    
+    private static final int[] WORDS = {1, 10, 100, 1000};
+    
+    public static void main(String[] args) {
+    	Random random = new Random(42);
+    	double worst = 0;
+    	for (double scale : SCALES) {
+    	    for (int order : ORDERS) {
+    		double worstDefault = 0;
+    		double worstHighOrder = 0;
+    		for (int words : WORDS) {
+    		    int[] positions = positions(random, words, scale);
+    		    double[] direct = direct(positions, scale, order);
+    		    worstDefault = Math.max(worstDefault, 
+    			    deviation(coeffs(positions, scale, order, false), 
+    				    direct, order));
+    		    worstHighOrder = Math.max(worstHighOrder, 
+    			    deviation(coeffs(positions, scale, order, true), 
+    				    direct, order));
+    		}
+    		System.out.printf("scale %10.3f  order %3d  default %.2e  "
+    			+ "high order %.2e%n", scale, order, worstDefault, 
+    			worstHighOrder);
+    		worst = Math.max(worst, Math.max(worstDefault, worstHighOrder));
+    	    }
+    	}
+    	System.out.printf("largest deviation %.2e (tolerance %.0e)%n", worst,
+    		TOLERANCE);
+    	if (!(worst <= TOLERANCE)) {
+    	    throw new AssertionError("Fourier coefficients deviate from the "
+    		    + "direct formula by " + worst);
+    	}
+    }
+    
+    /**
+     * @return words distinct random positions in 1, ..., floor(scale), 
+     *  sorted
+     */
+    private static int[] positions(Random random, int words, double scale) {
+    	int length = (int)scale;
+    	boolean[] used = new boolean[length + 1];
+    	int[] positions = new int[Math.min(words, length)];
+    	for (int i = 0; i < positions.length; i++) {
+    	    int position;
+    	    do {
+    		position = 1 + random.nextInt(length);
+    	    } while (used[position]);
+    	    used[position] = true;
+    	    positions[i] = position;
+    	}
+    	Arrays.sort(positions);
+    	return positions;
+    }
+    
+    private static double[] coeffs(int[] positions, double scale, int order,
+	    boolean highOrder) {
+    	Fourier fourier = new Fourier();
+    	fourier.setMaxOrder(order);
+    	fourier.setScale(scale);
+    	fourier.setHighOrder(highOrder);
+    	fourier.setWordPositions(positions);
+    	return fourier.calculateCoeffs();
+    }
+    
+    /**
+     * @return Coefficients c_0, ..., c_order by the direct formula
+     */
+    private static double[] direct(int[] positions, double scale, int order) {
+    	double[] c = new double[order + 1];
+    	c[0] = positions.length / Math.sqrt(scale);
+    	boolean integer = scale == Math.rint(scale);
+    	for (int n = 1; n <= order; n++) {
+    	    int k = (n + 1) / 2;
+    	    double sum = 0;
+    	    for (int p : positions) {
+    		sum += trig(n, k, p, scale, integer) 
+    			- trig(n, k, p - 1, scale, integer);
+    	    }
+    	    double prefactor = 1 / (k * Math.PI) * Math.sqrt(scale / 2);
+    	    c[n] = (n % 2 == 0 ? prefactor : -prefactor) * sum;
+    	}
+    	return c;
+    }
+    
+    /**
+     * @return sin (n even) or cos (n odd) of 2 pi k position / scale
+     */
+    private static double trig(int n, int k, int position, double scale,
+	    boolean integer) {
+    	double angle;
+    	if (integer) {
+    	    long length = (long)scale;
+    	    angle = 2 * Math.PI * (((long)k * position) % length) / length;
+    	} else {
+    	    angle = 2 * Math.PI * k * position / scale;
+    	}
+    	return n % 2 == 0 ? Math.sin(angle) : Math.cos(angle);
+    }
+    
+    /**
+     * @return max_n |c_n - reference_n| / |reference|
+     */
+    private static double deviation(double[] c, double[] reference, 
+	    int order) {
+    	double norm = 0;
+    	double max = 0;
+    	for (int n = 0; n <= order; n++) {
+    	    norm += reference[n] * reference[n];
+    	    max = Math.max(max, Math.abs(c[n] - reference[n]));
+    	}
+    	return max / Math.sqrt(norm);
+    }
+}
@@ -0,0 +1,166 @@
+package math;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Tolerance test of the kernel implementation in use against ScalarKernels
+ *
+ * The implementation chosen by Kernels (VectorKernels if it is on the class
+ * path and the JVM runs with --add-modules jdk.incubator.vector) is compared
+ * with ScalarKernels on random data:
+ * * dot(), sumOfSquares() and dotOverSumOfSquares() for lengths 0 to 300
+ *   and arbitrary offsets. Two summations of the same n products differ by
+ *   at most 2 n u \sum |a_i b_i| (u = 2^-53, [Higham, Accuracy and
+ *   Stability of Numerical Algorithms, 4.2]), which is the tolerance.
+ * * fourierSums() and legendreSums() for orders up to 256, integer and
+ *   non-integer scales and 1 to 1000 words. Every word contributes at most
+ *   2 (Fourier) or 4 / (2 n + 1) (Legendre) to a sum, the tolerance is
+ *   max_n |s_n - s_n^scalar| <= TOLERANCE * number of words.
+ * The test prints the largest deviations and fails with an AssertionError
+ * if a tolerance is exceeded. With the scalar implementation in use both
+ * sides are equal; the test then only reports that.
+ *
+ * @author Javier Fuentes (j.fuentes06@ufromail.cl)
+ * @version 1.0
+ */
+public class KernelsTest {
+
+    /**
+     * Largest allowed deviation of the Fourier and Legendre sums, per word
+     */
+    public static final double TOLERANCE = 1e-14;
+
+    private static final double U = Math.ulp(1.0) / 2;
+
+    private static final int[] ORDERS = {6, 30, 64, 256};
+
+    private static final double[] SCALES = {1000, 200000, 1000.5, 123456.789};
+
+    private static final int[] WORDS = {1, 7, 100, 1000};
+
+    public static void main(String[] args) {
+    	Kernels.Implementation tested = Kernels.getImplementation();
+    	Kernels.Implementation scalar = new ScalarKernels();
+    	System.out.println("implementation: " + tested.getName());
+    	if (tested instanceof ScalarKernels) {
+    	    System.out.println("Only the scalar implementation is available "
+    		    + "(see VectorKernels), nothing to compare.");
+    	    return;
+    	}
+    	Random random = new Random(42);
+    	boolean passed = true;
+
+    	// Scalar products, relative to the bound 2 n u \sum |a_i b_i|
+    	double worstDot = 0;
+    	for (int length = 0; length <= 300; length++) {
+    	    int aOffset = random.nextInt(8);
+    	    int bOffset = random.nextInt(8);
+    	    double[] a = random(random, aOffset + length);
+    	    double[] b = random(random, bOffset + length);
+    	    double absolute = 0;
+    	    double absoluteSquares = 0;
+    	    for (int i = 0; i < length; i++) {
+    		absolute += Math.abs(a[aOffset + i] * b[bOffset + i]);
+    		absoluteSquares += b[bOffset + i] * b[bOffset + i];
+    	    }
+    	    if (length == 0) {
+    		passed &= tested.dot(a, aOffset, b, bOffset, 0) == 0
+    			&& tested.sumOfSquares(b, bOffset, 0) == 0;
+    		continue;
+    	    }
+    	    double bound = 2 * length * U;
+    	    worstDot = Math.max(worstDot, Math.abs(
+    		    tested.dot(a, aOffset, b, bOffset, length)
+    		    - scalar.dot(a, aOffset, b, bOffset, length))
+    		    / (bound * absolute));
+    	    worstDot = Math.max(worstDot, Math.abs(
+    		    tested.sumOfSquares(b, bOffset, length)
+    		    - scalar.sumOfSquares(b, bOffset, length))
+    		    / (bound * absoluteSquares));
+    	    // Quotient: relative deviations of numerator and denominator
+    	    double quotient = scalar.dotOverSumOfSquares(a, aOffset, b,
+    		    bOffset, length);
+    	    double deviation = Math.abs(tested.dotOverSumOfSquares(a,
+    		    aOffset, b, bOffset, length) - quotient);
+    	    double allowed = bound * (absolute / absoluteSquares
+    		    + Math.abs(quotient)) + 2 * U * Math.abs(quotient);
+    	    worstDot = Math.max(worstDot, deviation / allowed);
+    	}
+    	System.out.printf("scalar products: largest deviation %.2f of the "
+    		+ "bound%n", worstDot);
+    	passed &= worstDot <= 1;
+
+    	// Fourier and Legendre sums, per word
+    	double worstFourier = 0;
+    	double worstLegendre = 0;
+    	for (double scale : SCALES) {
+    	    FourierTable table = FourierTable.forScale(scale);
+    	    for (int order : ORDERS) {
+    		for (int words : WORDS) {
+    		    int[] positions = positions(random, words, scale);
+    		    double[] expected = new double[order + 1];
+    		    double[] actual = new double[order + 1];
+    		    scalar.fourierSums(table, positions, 0, words, scale,
+    			    order, expected, 0);
+    		    tested.fourierSums(table, positions, 0, words, scale,
+    			    order, actual, 0);
+    		    worstFourier = Math.max(worstFourier,
+    			    deviation(actual, expected) / words);
+    		    Arrays.fill(expected, 0);
+    		    Arrays.fill(actual, 0);
+    		    scalar.legendreSums(positions, 0, words, scale, order,
+    			    expected, 0);
+    		    tested.legendreSums(positions, 0, words, scale, order,
+    			    actual, 0);
+    		    worstLegendre = Math.max(worstLegendre,
+    			    deviation(actual, expected) / words);
+    		}
+    	    }
+    	}
+    	System.out.printf("Fourier sums: largest deviation %.2e per word "
+    		+ "(tolerance %.0e)%n", worstFourier, TOLERANCE);
+    	System.out.printf("Legendre sums: largest deviation %.2e per word "
+    		+ "(tolerance %.0e)%n", worstLegendre, TOLERANCE);
+    	passed &= worstFourier <= TOLERANCE && worstLegendre <= TOLERANCE;
+
+    	if (!passed) {
+    	    throw new AssertionError(tested.getName()
+    		    + " deviates from the scalar kernels");
+    	}
+    }
+
+    /**
+     * @return Array of random values in [-1, 1)
+     */
+    private static double[] random(Random random, int length) {
+    	double[] values = new double[length];
+    	for (int i = 0; i < length; i++) {
+    	    values[i] = 2 * random.nextDouble() - 1;
+    	}
+    	return values;
+    }
+
+    /**
+     * @return words random positions in 1, ..., floor(scale), sorted
+     */
+    private static int[] positions(Random random, int words, double scale) {
+    	int[] positions = new int[words];
+    	for (int i = 0; i < words; i++) {
+    	    positions[i] = 1 + random.nextInt((int)scale);
+    	}
+    	Arrays.sort(positions);
+    	return positions;
+    }
+
+    /**
+     * @return max_n |a_n - b_n|
+     */
+    private static double deviation(double[] a, double[] b) {
+    	double max = 0;
+    	for (int n = 0; n < a.length; n++) {
+    	    max = Math.max(max, Math.abs(a[n] - b[n]));
+    	}
+    	return max;
+    }
+}
@@ -0,0 +1,246 @@
+package math;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Implementation of the kernels with the Vector API (see Kernels)
+ *
+ * The scalar products process as many coefficients per instruction as the
+ * preferred vector shape holds (4 with AVX2, 8 with AVX-512), with one
+ * fused multiply-add per step. The Fourier and Legendre sums run the
+ * recurrences of ScalarKernels for that many words at once: every lane
+ * calculates the values of its word with the scalar operations, only the
+ * sums over the words are grouped differently. Elements that do not fill a
+ * vector are left to ScalarKernels, so that short arrays (e. g. the 7
+ * coefficients of order 6 with AVX-512) gain nothing.
+ *
+ * This class needs Java 17 and the incubator module, and is therefore kept
+ * out of the Java 8 source folder src. It is compiled and used with
+ * <pre>
+ * javac --release 17 --add-modules jdk.incubator.vector -cp bin \
+ *     -d bin-vector vector/math/VectorKernels.java
+ * java --add-modules jdk.incubator.vector -cp bin-vector:bin:lib/... ...
+ * </pre>
+ * Without the module or without bin-vector on the class path Kernels falls
+ * back to ScalarKernels.
+ *
+ * @author Javier Fuentes (j.fuentes06@ufromail.cl)
+ * @version 1.0
+ */
+public final class VectorKernels implements Kernels.Implementation {
+
+    private static final VectorSpecies<Double> SPECIES =
+	    DoubleVector.SPECIES_PREFERRED;
+
+    private static final int LANES = SPECIES.length();
+
+    /**
+     * Kernels for arrays shorter than a vector
+     */
+    private static final ScalarKernels SCALAR = new ScalarKernels();
+
+    /**
+     * Public constructor (see Kernels.select())
+     *
+     * @throws UnsupportedOperationException If the preferred vectors hold
+     *  less than two doubles
+     */
+    public VectorKernels() {
+	if (LANES < 2) {
+	    throw new UnsupportedOperationException("No vector registers.");
+	}
+    }
+
+    @Override
+    public String getName() {
+	return "vector (" + SPECIES + ")";
+    }
+
+    @Override
+    public double dot(double[] a, int aOffset, double[] b, int bOffset,
+	    int length) {
+	if (length < LANES) {
+	    return SCALAR.dot(a, aOffset, b, bOffset, length);
+	}
+	DoubleVector sum = DoubleVector.zero(SPECIES);
+	int i = 0;
+	for (int bound = SPECIES.loopBound(length); i < bound; i += LANES) {
+	    DoubleVector va = DoubleVector.fromArray(SPECIES, a, aOffset + i);
+	    DoubleVector vb = DoubleVector.fromArray(SPECIES, b, bOffset + i);
+	    sum = va.fma(vb, sum);
+	}
+	double result = sum.reduceLanes(VectorOperators.ADD);
+	for (; i < length; i++) {
+	    result += a[aOffset + i] * b[bOffset + i];
+	}
+	return result;
+    }
+
+    @Override
+    public double sumOfSquares(double[] a, int offset, int length) {
+	return dot(a, offset, a, offset, length);
+    }
+
+    @Override
+    public double dotOverSumOfSquares(double[] a, int aOffset, double[] b,
+	    int bOffset, int length) {
+	if (length < LANES) {
+	    return SCALAR.dotOverSumOfSquares(a, aOffset, b, bOffset, length);
+	}
+	DoubleVector dot = DoubleVector.zero(SPECIES);
+	DoubleVector squares = DoubleVector.zero(SPECIES);
+	int i = 0;
+	for (int bound = SPECIES.loopBound(length); i < bound; i += LANES) {
+	    DoubleVector va = DoubleVector.fromArray(SPECIES, a, aOffset + i);
+	    DoubleVector vb = DoubleVector.fromArray(SPECIES, b, bOffset + i);
+	    dot = va.fma(vb, dot);
+	    squares = vb.fma(vb, squares);
+	}
+	double dotResult = dot.reduceLanes(VectorOperators.ADD);
+	double squaresResult = squares.reduceLanes(VectorOperators.ADD);
+	for (; i < length; i++) {
+	    double bi = b[bOffset + i];
+	    dotResult += a[aOffset + i] * bi;
+	    squaresResult += bi * bi;
+	}
+	return dotResult / squaresResult;
+    }
+
+    /**
+     * Runs the angle-addition recurrence for LANES words at once
+     *
+     * The sums of every order are accumulated per lane in a table of
+     * (order + 1) * LANES values and reduced at the end. The seeds are
+     * calculated per word, as in ScalarKernels.
+     */
+    @Override
+    public void fourierSums(FourierTable table, int[] positions, int from,
+	    int to, double scale, int order, double[] out, int outOffset) {
+	int maxEff = (order + 1) / 2;
+	int bound = from + SPECIES.loopBound(to - from);
+	if (bound > from) {
+	    double[] sums = new double[(order + 1) * LANES];
+	    double[] seeds = new double[4 * LANES];
+	    for (int i = from; i < bound; i += LANES) {
+		seed(table, positions, i, 1, scale, seeds);
+		DoubleVector sin1Upper = DoubleVector.fromArray(SPECIES, seeds, 0);
+		DoubleVector cos1Upper = DoubleVector.fromArray(SPECIES, seeds, LANES);
+		DoubleVector sin1Lower = DoubleVector.fromArray(SPECIES, seeds, 2 * LANES);
+		DoubleVector cos1Lower = DoubleVector.fromArray(SPECIES, seeds, 3 * LANES);
+		DoubleVector sinUpper = sin1Upper;
+		DoubleVector cosUpper = cos1Upper;
+		DoubleVector sinLower = sin1Lower;
+		DoubleVector cosLower = cos1Lower;
+		for (int nEff = 1; nEff <= maxEff; nEff++) {
+		    if (nEff % Fourier.RESEED_INTERVAL == 0) {
+			seed(table, positions, i, nEff, scale, seeds);
+			sinUpper = DoubleVector.fromArray(SPECIES, seeds, 0);
+			cosUpper = DoubleVector.fromArray(SPECIES, seeds, LANES);
+			sinLower = DoubleVector.fromArray(SPECIES, seeds, 2 * LANES);
+			cosLower = DoubleVector.fromArray(SPECIES, seeds, 3 * LANES);
+		    }
+		    // Sine coefficient (n odd) and cosine coefficient (n even)
+		    int odd = (2 * nEff - 1) * LANES;
+		    DoubleVector.fromArray(SPECIES, sums, odd)
+			    .add(cosUpper.sub(cosLower)).intoArray(sums, odd);
+		    if (2 * nEff <= order) {
+			int even = 2 * nEff * LANES;
+			DoubleVector.fromArray(SPECIES, sums, even)
+				.add(sinUpper.sub(sinLower)).intoArray(sums, even);
+		    }
+		    DoubleVector sinNext = sinUpper.mul(cos1Upper)
+			    .add(cosUpper.mul(sin1Upper));
+		    cosUpper = cosUpper.mul(cos1Upper).sub(sinUpper.mul(sin1Upper));
+		    sinUpper = sinNext;
+		    sinNext = sinLower.mul(cos1Lower).add(cosLower.mul(sin1Lower));
+		    cosLower = cosLower.mul(cos1Lower).sub(sinLower.mul(sin1Lower));
+		    sinLower = sinNext;
+		}
+	    }
+	    for (int n = 1; n <= order; n++) {
+		out[outOffset + n] += DoubleVector.fromArray(SPECIES, sums,
+			n * LANES).reduceLanes(VectorOperators.ADD);
+	    }
+	}
+	ScalarKernels.fourierSumsScalar(table, positions, bound, to, scale,
+		order, out, outOffset);
+    }
+
+    /**
+     * Writes sin and cos of 2 pi n p / scale for the upper (p) and lower
+     * (p - 1) ends of the words positions[from], ...,
+     * positions[from + LANES - 1] to seeds (four rows of LANES values)
+     */
+    private static void seed(FourierTable table, int[] positions, int from,
+	    int n, double scale, double[] seeds) {
+	for (int l = 0; l < LANES; l++) {
+	    int position = positions[from + l];
+	    seeds[l] = FourierKernel.sin(table, n, position, scale);
+	    seeds[LANES + l] = FourierKernel.cos(table, n, position, scale);
+	    seeds[2 * LANES + l] = FourierKernel.sin(table, n, position - 1,
+		    scale);
+	    seeds[3 * LANES + l] = FourierKernel.cos(table, n, position - 1,
+		    scale);
+	}
+    }
+
+    /**
+     * Runs Bonnet's recurrence for both ends of LANES words at once
+     *
+     * The sums of every order are accumulated per lane in a table of
+     * (order + 1) * LANES values and reduced at the end.
+     */
+    @Override
+    public void legendreSums(int[] positions, int from, int to,
+	    double scale, int order, double[] out, int outOffset) {
+	int bound = from + SPECIES.loopBound(to - from);
+	if (bound > from) {
+	    double[] sums = new double[(order + 1) * LANES];
+	    double[] ends = new double[2 * LANES];
+	    for (int j = from; j < bound; j += LANES) {
+		for (int l = 0; l < LANES; l++) {
+		    ends[l] = 2 * positions[j + l];
+		    ends[LANES + l] = 2 * (positions[j + l] - 1);
+		}
+		// u = 2 p / scale - 1 for the upper and lower end
+		DoubleVector uUpper = DoubleVector.fromArray(SPECIES, ends, 0)
+			.div(scale).sub(1);
+		DoubleVector uLower = DoubleVector.fromArray(SPECIES, ends, LANES)
+			.div(scale).sub(1);
+
+		// Zeroth order: antiderivative u
+		DoubleVector.fromArray(SPECIES, sums, 0)
+			.add(uUpper.sub(uLower)).intoArray(sums, 0);
+
+		DoubleVector previousUpper = DoubleVector.broadcast(SPECIES, 1);
+		DoubleVector previousLower = previousUpper;
+		DoubleVector currentUpper = uUpper;
+		DoubleVector currentLower = uLower;
+		for (int n = 1; n <= order; n++) {
+		    // current = P_n(u), next = P_{n+1}(u)
+		    DoubleVector nextUpper = uUpper.mul(2 * n + 1).mul(currentUpper)
+			    .sub(previousUpper.mul(n)).div(n + 1);
+		    DoubleVector nextLower = uLower.mul(2 * n + 1).mul(currentLower)
+			    .sub(previousLower.mul(n)).div(n + 1);
+		    int row = n * LANES;
+		    DoubleVector.fromArray(SPECIES, sums, row)
+			    .add(nextUpper.sub(previousUpper)
+				    .sub(nextLower.sub(previousLower)).div(2 * n + 1))
+			    .intoArray(sums, row);
+		    previousUpper = currentUpper;
+		    currentUpper = nextUpper;
+		    previousLower = currentLower;
+		    currentLower = nextLower;
+		}
+	    }
+	    for (int n = 0; n <= order; n++) {
+		out[outOffset + n] += DoubleVector.fromArray(SPECIES, sums,
+			n * LANES).reduceLanes(VectorOperators.ADD);
+	    }
+	}
+	ScalarKernels.legendreSumsScalar(positions, bound, to, scale, order,
+		out, outOffset);
+    }
+}